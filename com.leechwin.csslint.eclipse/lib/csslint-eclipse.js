@@ -0,0 +1,518 @@
+/*
+ * Rules used by the Eclipse plugin on top of csslint.js. This file is
+ * evaluated in the same scope as csslint.js, right after it.
+ */
+
+/*
+ * Rule: Record what the stylesheet-wide rules count and define, so that
+ * parts of a stylesheet can be linted separately and merged afterwards.
+ * Reports nothing; the summary is stored in the "rollup-summary" stat.
+ * Each recording mirrors the rule named next to it, quirks included.
+ */
+
+CSSLint.addRule({
+
+    //rule information
+    id: "rollup-summary",
+    name: "Record stylesheet-wide counters",
+    desc: "Collects the counters and definitions of stylesheet-wide rules.",
+    browsers: "All",
+
+    //initialization
+    init: function(parser, reporter) {
+        "use strict";
+        var summary = {
+            floats: 0,
+            fontFaces: 0,
+            fontSizes: 0,
+            important: 0,
+            headings: [],       // [name, elementName, line, col]
+            backgrounds: [],    // [uri, line, col]
+            ids: [],            // [part, modifier, line, col]
+            classes: [],        // [modifier, part, line, col, hasElement]
+            //[count, total, over budget, highest, its line, its col, budget]
+            selectorCost: reporter.ruleset["selector-cost"] ?
+                    [0, 0, 0, -1, 0, 0, reporter.ruleset["selector-cost-budget"] || selectorCostBudget] : null,
+            //[text, size, line, col] of each declaration block, flattened; only with duplicate-blocks on
+            blocks: reporter.ruleset["duplicate-blocks"] || reporter.ruleset["rollup-blocks"] ? [] : null
+        };
+
+        parser.addListener("property", function(event) {
+            var name = event.property.text,
+                value = event.value,
+                i, len;
+
+            //floats
+            if (name.toLowerCase() === "float" && value.text.toLowerCase() !== "none") {
+                summary.floats++;
+            }
+
+            //font-sizes
+            if (event.property.toString() === "font-size") {
+                summary.fontSizes++;
+            }
+
+            //important
+            if (event.important === true) {
+                summary.important++;
+            }
+
+            //duplicate-background-images
+            if (name.match(/background/i)) {
+                for (i=0, len=value.parts.length; i < len; i++) {
+                    if (value.parts[i].type === "uri") {
+                        summary.backgrounds.push([value.parts[i].uri, event.line, event.col]);
+                    }
+                }
+            }
+        });
+
+        //font-faces
+        parser.addListener("startfontface", function() {
+            summary.fontFaces++;
+        });
+
+        parser.addListener("startrule", function(event) {
+            var selectors = event.selectors,
+                selector,
+                part,
+                modifier,
+                pseudo,
+                cost,
+                i, j, k;
+
+            for (i=0; i < selectors.length; i++) {
+                selector = selectors[i];
+
+                //selector-cost
+                if (summary.selectorCost) {
+                    cost = selectorCost(selector).total;
+                    summary.selectorCost[0]++;
+                    summary.selectorCost[1] += cost;
+                    if (cost > summary.selectorCost[6]) {
+                        summary.selectorCost[2]++;
+                    }
+                    if (cost > summary.selectorCost[3]) {
+                        summary.selectorCost.splice(3, 3, cost, selector.line, selector.col);
+                    }
+                }
+
+                //unique-headings, which never resets pseudo within a rule
+                part = selector.parts[selector.parts.length-1];
+                if (part.elementName && /(h[1-6])/i.test(part.elementName.toString())) {
+                    for (j=0; j < part.modifiers.length; j++) {
+                        if (part.modifiers[j].type === "pseudo") {
+                            pseudo = true;
+                            break;
+                        }
+                    }
+                    if (!pseudo) {
+                        summary.headings.push([RegExp.$1, String(part.elementName), part.line, part.col]);
+                    }
+                }
+
+                //overqualified-elements
+                for (j=0; j < selector.parts.length; j++) {
+                    part = selector.parts[j];
+                    if (part.type === parser.SELECTOR_PART_TYPE) {
+                        for (k=0; k < part.modifiers.length; k++) {
+                            modifier = part.modifiers[k];
+                            if (part.elementName && modifier.type === "id") {
+                                summary.ids.push([String(part), String(modifier), part.line, part.col]);
+                            } else if (modifier.type === "class") {
+                                summary.classes.push([String(modifier), String(part), part.line, part.col,
+                                        part.elementName ? 1 : 0]);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        //duplicate-blocks
+        if (summary.blocks) {
+            declarationBlocks(parser, function(block, size, line, col) {
+                summary.blocks.push(block, size, line, col);
+            });
+        }
+
+        parser.addListener("endstylesheet", function() {
+            reporter.stat("rollup-summary", summary);
+        });
+    }
+
+});
+
+/*
+ * Rule: Record the URI of every @import, in the "import-edges" stat, so
+ * that a change to one stylesheet can be followed to those importing it.
+ * Reports nothing.
+ */
+
+CSSLint.addRule({
+
+    //rule information
+    id: "import-edges",
+    name: "Record imports",
+    desc: "Collects the URIs of @import rules.",
+    browsers: "All",
+
+    //initialization
+    init: function(parser, reporter) {
+        "use strict";
+        var uris = [];
+
+        reporter.stat("import-edges", uris);
+
+        parser.addListener("import", function(event) {
+            uris.push(event.uri);
+        });
+    }
+
+});
+
+/*
+ * Selector cost: how much work a browser does to match a selector, which it
+ * does from right to left. The key selector, on the right, decides how many
+ * elements are tried at all: an id few, a class more, an element name many,
+ * and anything else every element. Each descendant or general sibling
+ * combinator then walks over many elements, and attribute values and
+ * structural pseudo-classes are tested on each. The scores are relative; only
+ * their order matters.
+ */
+
+var selectorCostBudget = 20;
+
+function selectorCost(selector) {
+    "use strict";
+    var cost = { key: 0, combinators: 0, attributes: 0, pseudos: 0, total: 0 },
+        key = selector.parts[selector.parts.length-1],
+        part,
+        i;
+
+    if (hasModifier(key, "id")) {
+        cost.key = 1;
+    } else if (hasModifier(key, "class")) {
+        cost.key = 2;
+    } else if (key.elementName && String(key.elementName) !== "*") {
+        cost.key = 4;
+    } else {
+        cost.key = 10;
+    }
+
+    for (i=0; i < selector.parts.length; i++) {
+        part = selector.parts[i];
+        if (part.type === "descendant") {
+            cost.combinators += 4;
+        } else if (part.type === "sibling") {
+            cost.combinators += 3;
+        } else if (part.type === "child" || part.type === "adjacent-sibling") {
+            cost.combinators += 1;
+        } else if (part.modifiers) {
+            addModifiers(part.modifiers, cost);
+        }
+    }
+    cost.total = cost.key + cost.combinators + cost.attributes + cost.pseudos;
+    return cost;
+
+    function hasModifier(part, type) {
+        for (var j=0; j < part.modifiers.length; j++) {
+            if (part.modifiers[j].type === type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    function addModifiers(modifiers, cost) {
+        var modifier, text, j;
+        for (j=0; j < modifiers.length; j++) {
+            modifier = modifiers[j];
+            text = String(modifier).toLowerCase();
+            if (modifier.type === "attribute") {
+                cost.attributes += /\*=/.test(text) ? 5 : /[\^$]=/.test(text) ? 3 : /=/.test(text) ? 2 : 1;
+            } else if (modifier.type === "pseudo") {
+                if (/^::|^:(before|after|first-line|first-letter)$/.test(text)) {
+                    continue;
+                }
+                cost.pseudos += /^:(nth-|last-|only-|first-of-type|empty)/.test(text) ? 3 : 1;
+            } else if (modifier.type === "not") {
+                cost.pseudos += 2;
+                addModifiers(modifier.args[0] ? modifier.args[0].modifiers : [], cost);
+            }
+        }
+    }
+}
+
+/*
+ * Rule: Warn about selectors which cost more to match than the budget in the
+ * "selector-cost-budget" option, and sum up the cost of the whole stylesheet
+ * when any do.
+ */
+
+CSSLint.addRule({
+
+    //rule information
+    id: "selector-cost",
+    name: "Keep selectors cheap to match",
+    desc: "Selectors whose key selector matches many elements, or which walk up the document, are slow to match.",
+    browsers: "All",
+
+    //initialization
+    init: function(parser, reporter) {
+        "use strict";
+        var rule = this,
+            budget = reporter.ruleset["selector-cost-budget"] || selectorCostBudget,
+            count = 0,
+            total = 0,
+            over = 0,
+            max = null;
+
+        parser.addListener("startrule", function(event) {
+            var selectors = event.selectors,
+                selector,
+                cost,
+                i;
+
+            for (i=0; i < selectors.length; i++) {
+                selector = selectors[i];
+                cost = selectorCost(selector);
+                count++;
+                total += cost.total;
+                if (max === null || cost.total > max.total) {
+                    max = { total: cost.total, line: selector.line };
+                }
+                if (cost.total > budget) {
+                    over++;
+                    reporter.report("Selector '" + selector.text + "' costs " + cost.total +
+                            " to match, over the budget of " + budget + " (key " + cost.key +
+                            ", combinators " + cost.combinators + ", attributes " + cost.attributes +
+                            ", pseudo-classes " + cost.pseudos + ").", selector.line, selector.col, rule);
+                }
+            }
+        });
+
+        parser.addListener("endstylesheet", function() {
+            if (over > 0) {
+                reporter.rollupWarn("Selectors cost " + total + " to match in all, " + (total / count).toFixed(1) +
+                        " on average; " + over + " of " + count + " are over the budget of " + budget +
+                        ", the costliest (" + max.total + ") at line " + max.line + ".", rule);
+            }
+        });
+    }
+
+});
+
+/*
+ * Declaration blocks: the declarations of each rule are written out as they
+ * are parsed, minified, with each run of whitespace as one space and property
+ * names in lower case. Blocks in different media are told apart, as repeating
+ * a block for other media is not redundant. The text is built by
+ * concatenation, which costs far less in Rhino than going over it character
+ * by character, and is only flattened when first used as a key. Its length is
+ * that of the block minified, which is also what grouping its selectors with
+ * those of an identical block saves.
+ */
+
+function declarationBlocks(parser, onBlock) {
+    "use strict";
+    var media = "",
+        text, line, col,
+        open = false;
+
+    parser.addListener("startmedia", function(event) {
+        media = String(event.media).toLowerCase();
+    });
+
+    parser.addListener("endmedia", function() {
+        media = "";
+    });
+
+    parser.addListener("startrule", function(event) {
+        text = "";
+        line = event.line;
+        col = event.col;
+        open = true;
+    });
+
+    parser.addListener("property", function(event) {
+        var value;
+        if (open) {
+            value = event.value.text;
+            text += event.property.toString().toLowerCase() + ":" +
+                    (/\s\s|[\t\n\f\r]/.test(value) ? value.replace(/\s+/g, " ") : value) +
+                    (event.important ? "!important;" : ";");
+        }
+    });
+
+    parser.addListener("endrule", function() {
+        if (open && text.length > 0) {
+            onBlock(media ? "@media " + media + "{" + text : text, text.length, line, col);
+        }
+        open = false;
+    });
+}
+
+/*
+ * Rule: Warn about declaration blocks which repeat an earlier one, as their
+ * selectors could be grouped instead, and sum up what that would save.
+ */
+
+CSSLint.addRule({
+
+    //rule information
+    id: "duplicate-blocks",
+    name: "Disallow repeated declaration blocks",
+    desc: "A declaration block written again for other selectors could be written once, with them grouped.",
+    browsers: "All",
+
+    //initialization
+    init: function(parser, reporter) {
+        "use strict";
+        var rule = this,
+            first = {},     //block: line * 2^32 + col of the first one like it
+            repeats = 0,
+            saved = 0;
+
+        declarationBlocks(parser, function(block, size, line, col) {
+            var at = first[block];
+            if (at === undefined) {
+                first[block] = line * 4294967296 + col;
+            } else {
+                repeats++;
+                saved += size;
+                reporter.report("Declaration block repeats the one at line " + Math.floor(at / 4294967296) +
+                        ", col " + (at % 4294967296) + "; grouping the selectors would save about " + size +
+                        " bytes.", line, col, rule);
+            }
+        });
+
+        parser.addListener("endstylesheet", function() {
+            if (repeats > 0) {
+                reporter.rollupWarn(repeats + " declaration blocks repeat earlier ones; grouping their selectors" +
+                        " would save about " + saved + " bytes.", rule);
+            }
+        });
+    }
+
+});
+
+/*
+ * Rule timing: when the "rule-timing" option is set, the time spent in each
+ * rule's init and parser listeners is added up in the "rule-timing" stat, as
+ * {ruleId: [nanoseconds, calls]}. When it is not set, each rule costs one
+ * property lookup per verify. Rules added after this file are timed too.
+ */
+
+(function() {
+    "use strict";
+
+    var System = java.lang.System,
+        addRule = CSSLint.addRule,
+        rules = CSSLint.getRules(),
+        i;
+
+    function timed(rule) {
+        var init = rule.init;
+
+        rule.init = function(parser, reporter) {
+            if (!reporter.ruleset["rule-timing"]) {
+                return init.call(this, parser, reporter);
+            }
+
+            var timings = reporter.stats["rule-timing"],
+                timing,
+                proxy = Object.create(parser),
+                start;
+
+            if (!timings) {
+                timings = {};
+                reporter.stat("rule-timing", timings);
+            }
+            timing = timings[rule.id] || (timings[rule.id] = [0, 0]);
+
+            proxy.addListener = function(type, listener) {
+                parser.addListener(type, function(event) {
+                    var start = System.nanoTime();
+                    try {
+                        return listener.call(this, event);
+                    } finally {
+                        timing[0] += System.nanoTime() - start;
+                        timing[1]++;
+                    }
+                });
+            };
+
+            start = System.nanoTime();
+            try {
+                return init.call(this, proxy, reporter);
+            } finally {
+                timing[0] += System.nanoTime() - start;
+            }
+        };
+        return rule;
+    }
+
+    for (i = 0; i < rules.length; i++) {
+        timed(rules[i]);
+    }
+
+    CSSLint.addRule = function(rule) {
+        return addRule.call(this, timed(rule));
+    };
+}());
+
+/*
+ * Profiles: when the "profiles" option holds an array of rulesets, each
+ * rule is initialized once per profile that enables it, with a reporter of
+ * that profile's own, so that one parse checks every profile. The reporters
+ * are stored in the "profiles" stat, in the order of the rulesets. Rules
+ * added after this file take part too.
+ */
+
+(function() {
+    "use strict";
+
+    var addRule = CSSLint.addRule,
+        rules = CSSLint.getRules(),
+        i;
+
+    function profiled(rule) {
+        var init = rule.init;
+
+        rule.init = function(parser, reporter) {
+            var profiles = reporter.ruleset.profiles,
+                reporters,
+                k;
+
+            if (!profiles) {
+                return init.call(this, parser, reporter);
+            }
+
+            reporters = reporter.stats.profiles;
+            if (!reporters) {
+                reporters = [];
+                for (k = 0; k < profiles.length; k++) {
+                    profiles[k].errors = 2;     //as verify does
+                    reporters.push(new CSSLint._Reporter(reporter.lines, profiles[k], reporter.allow));
+                }
+                reporter.stat("profiles", reporters);
+            }
+
+            for (k = 0; k < profiles.length; k++) {
+                if (profiles[k][rule.id]) {
+                    init.call(this, parser, reporters[k]);
+                }
+            }
+        };
+        return rule;
+    }
+
+    for (i = 0; i < rules.length; i++) {
+        profiled(rules[i]);
+    }
+
+    CSSLint.addRule = function(rule) {
+        return addRule.call(this, profiled(rule));
+    };
+}());
@@ -1,11 +1,22 @@
 package com.leechwin.csslint.eclipse;
 
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.eclipse.ui.preferences.ScopedPreferenceStore;
 import org.osgi.framework.BundleContext;
 
+import com.leechwin.csslint.eclipse.builder.CssLintProvider;
+import com.leechwin.csslint.eclipse.builder.EditorState;
+import com.leechwin.csslint.eclipse.engine.LintMetrics;
+import com.leechwin.csslint.eclipse.ui.EditorTracker;
+
 /**
  * The activator class controls the plug-in life cycle
  */
@@ -28,13 +39,45 @@ public class Activator extends AbstractUIPlugin {
     public void start(BundleContext context) throws Exception {
         super.start(context);
         plugin = this;
+        registerMetrics();
+        // Without a workbench yet, the startup extension tries again once there is one.
+        CssLintProvider.getDefault().setEditorState(EditorTracker.getInstance());
+        EditorTracker.getInstance().init();
     }
 
     public void stop(BundleContext context) throws Exception {
+        unregisterMetrics();
+        CssLintProvider.getDefault().setEditorState(EditorState.NONE);
+        CssLintProvider.getDefault().dispose();
         plugin = null;
         super.stop(context);
     }
 
+    /** Make the lint metrics visible over JMX. */
+    private void registerMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(LintMetrics.OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(LintMetrics.getDefault(), name);
+            }
+        } catch (JMException e) {
+            CssLintLog.error("Failed to register the CSSLint metrics", e);
+        }
+    }
+
+    private void unregisterMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(LintMetrics.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            CssLintLog.error("Failed to unregister the CSSLint metrics", e);
+        }
+    }
+
     /**
      * Returns the shared instance
      * @return the shared instance
@@ -0,0 +1,39 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for one run of the {@link CssLintBuilder} on a project.
+ */
+@Name("com.leechwin.csslint.Build")
+@Label("CSS Lint Build")
+@Category("CSSLint")
+@Description("Linting of the css files of a project by the builder")
+@Threshold("0 ms")
+@StackTrace(false)
+final class BuildEvent extends jdk.jfr.Event {
+
+    @Label("Project")
+    String project;
+
+    @Label("Kind")
+    @Description("Full, incremental, auto or clean")
+    String kind;
+
+    @Label("Files Visited")
+    @Description("Css files considered for linting")
+    int visited;
+
+    @Label("Files Linted")
+    int linted;
+
+    @Label("Files Skipped")
+    @Description("Css files which are excluded from linting")
+    int skipped;
+
+}
@@ -0,0 +1,49 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.core.runtime.content.IContentTypeManager;
+
+import com.leechwin.csslint.eclipse.Activator;
+
+/**
+ * Decide which files to lint from their content types, as declared in plugin.xml, so that users can add their own
+ * file names. Only names are looked at: the contents of a file are never read to find out its type.
+ */
+class CssContentTypes {
+
+    // NB! Must match plugin.xml declaration.
+    static final String CSS = Activator.PLUGIN_ID + ".css";
+
+    // NB! Must match plugin.xml declaration.
+    static final String EMBEDDED_CSS = Activator.PLUGIN_ID + ".embeddedCss";
+
+    private CssContentTypes() {
+    }
+
+    /** Is a file called {@code name} a stylesheet, or markup with styles in it? */
+    static boolean isLintable(String name) {
+        return isKindOf(name, CSS) || isEmbedded(name);
+    }
+
+    /** Is a file called {@code name} markup with styles in it, which must be extracted before linting? */
+    static boolean isEmbedded(String name) {
+        return isKindOf(name, EMBEDDED_CSS);
+    }
+
+    private static boolean isKindOf(String name, String id) {
+        IContentTypeManager manager = Platform.getContentTypeManager();
+        IContentType type = manager.getContentType(id);
+        if (type == null) {
+            // Not registered, as when running outside of a workbench.
+            return CSS.equals(id) && name.endsWith(".css");
+        }
+        for (IContentType candidate : manager.findContentTypesFor(name)) {
+            if (candidate.isKindOf(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Read the contents of a css file into memory, decoded using the file's charset.
+ * <p>
+ * This is on the path of every lint, so it avoids the general machinery where it can. Workspace files on the local
+ * disk are read directly. The charset comes from the file itself when it has a byte order mark, an {@code @charset}
+ * rule or an explicit setting, and otherwise from its folder, which is looked up once per folder and remembered.
+ * Content-type detection is never triggered. Finally, text that is pure ASCII in an ASCII compatible charset is turned
+ * into a {@link String} without running a decoder at all.
+ */
+public class CssFileReader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String CHARSET_RULE = "@charset \"";
+
+    /** The default charset of each folder we have read from. */
+    private final ConcurrentMap<String, String> folderCharsets = new ConcurrentHashMap<String, String>();
+
+    /** Forget the remembered folder charsets. Called at the start of every build, as they may have been changed. */
+    void clearCache() {
+        folderCharsets.clear();
+    }
+
+    /** Read all of {@code file}. */
+    public String read(CssSource file) throws IOException, CoreException {
+        byte[] bytes = file.readBytes();
+        int start = 0;
+        Charset charset = null;
+
+        if (startsWith(bytes, 0xEF, 0xBB, 0xBF)) {
+            start = 3;
+            charset = UTF8;
+        } else if (startsWith(bytes, 0xFE, 0xFF) || startsWith(bytes, 0xFF, 0xFE)) {
+            charset = Charset.forName("UTF-16");
+        } else {
+            String name = charsetRule(bytes);
+            if (name == null) {
+                name = file.getCharset();
+            }
+            if (name == null) {
+                name = folderCharset(file);
+            }
+            charset = Charset.forName(name);
+        }
+
+        if (isAsciiCompatible(charset) && isAscii(bytes, start)) {
+            return ascii(bytes, start);
+        }
+        return new String(bytes, start, bytes.length - start, charset);
+    }
+
+    /** The default charset of the folder of {@code file}, looked up once per folder. */
+    private String folderCharset(CssSource file) throws CoreException {
+        String path = file.getFolderPath();
+        String charset = folderCharsets.get(path);
+        if (charset == null) {
+            charset = file.getFolderCharset();
+            folderCharsets.put(path, charset);
+        }
+        return charset;
+    }
+
+    /** The charset named by a leading {@code @charset "name";} rule, or null. */
+    private String charsetRule(byte[] bytes) {
+        int length = CHARSET_RULE.length();
+        if (bytes.length <= length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != CHARSET_RULE.charAt(i)) {
+                return null;
+            }
+        }
+        for (int end = length; end < bytes.length && bytes[end] > 0; end++) {
+            if (bytes[end] == '"') {
+                String name = ascii(bytes, length, end);
+                return Charset.isSupported(name) ? name : null;
+            }
+        }
+        return null;
+    }
+
+    /** Are all the bytes from {@code start} onwards 7-bit? */
+    private static boolean isAscii(byte[] bytes, int start) {
+        for (int i = start; i < bytes.length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Does {@code charset} encode 7-bit characters as themselves? */
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name().toUpperCase(Locale.ENGLISH);
+        return name.equals("UTF-8") || name.equals("US-ASCII") || name.startsWith("ISO-8859-")
+                || name.startsWith("WINDOWS-125");
+    }
+
+    private static String ascii(byte[] bytes, int start) {
+        return ascii(bytes, start, bytes.length);
+    }
+
+    /** Make a string of 7-bit bytes, without going through a decoder. */
+    @SuppressWarnings("deprecation")
+    private static String ascii(byte[] bytes, int start, int end) {
+        return new String(bytes, 0, start, end - start);
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
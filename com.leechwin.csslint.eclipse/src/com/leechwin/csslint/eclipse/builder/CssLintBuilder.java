@@ -1,11 +1,13 @@
 package com.leechwin.csslint.eclipse.builder;
 
-import java.io.BufferedReader;
-import java.io.Closeable;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
@@ -13,59 +15,144 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import com.leechwin.csslint.eclipse.Activator;
 import com.leechwin.csslint.eclipse.CssLintLog;
-import com.leechwin.csslint.eclipse.engine.CssLint;
-import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.BlockCache;
+import com.leechwin.csslint.eclipse.engine.EnginePool;
 import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.engine.LintMetrics;
+import com.leechwin.csslint.eclipse.engine.ProjectRollup;
+import com.leechwin.csslint.eclipse.engine.ResultStore;
+import com.leechwin.csslint.eclipse.engine.RuleTimings;
 
 public class CssLintBuilder extends IncrementalProjectBuilder {
 
     private class CssLintDeltaVisitor implements IResourceDeltaVisitor {
-        private final IProgressMonitor monitor;
+        private final LintScheduler scheduler;
 
-        public CssLintDeltaVisitor(IProgressMonitor monitor) {
-            this.monitor = monitor;
+        /** Stylesheets importing the changed ones, to be linted once the delta has been visited. */
+        private final Set<IPath> importers = new LinkedHashSet<IPath>();
+
+        /** Folders whose {@code .csslintrc} changed, to be linted all over again. */
+        private final Set<IContainer> reconfigured = new LinkedHashSet<IContainer>();
+
+        public CssLintDeltaVisitor(LintScheduler scheduler) {
+            this.scheduler = scheduler;
         }
 
         public boolean visit(IResourceDelta delta) throws CoreException {
             IResource resource = delta.getResource();
+            if (resource instanceof IFile && resource.getName().equals(FolderConfigs.RC_FILE)) {
+                lintProvider.invalidateFolder(resource.getParent().getFullPath());
+                reconfigured.add(resource.getParent());
+            }
             switch (delta.getKind()) {
             case IResourceDelta.ADDED:
                 // handle added resource
-                logProgress(monitor, resource);
-                checkCss(resource);
+                if ((delta.getFlags() & IResourceDelta.MOVED_FROM) != 0
+                        && carriesOver(delta.getMovedFromPath(), resource.getFullPath())) {
+                    // Renamed, and its markers came along.
+                    LintMetrics.getDefault().recordSkippedDelta();
+                } else {
+                    schedule(scheduler, resource, true);
+                }
+                addImporters(resource);
                 break;
             case IResourceDelta.REMOVED:
                 // handle removed resource
+                if (resource instanceof IFile) {
+                    LintMetrics.getDefault().recordSkippedDelta();
+                    addImporters(resource);
+                    IPath path = resource.getFullPath();
+                    if ((delta.getFlags() & IResourceDelta.MOVED_TO) != 0
+                            && carriesOver(path, delta.getMovedToPath())) {
+                        IPath to = delta.getMovedToPath();
+                        importIndex.rename(path, to);
+                        projectRollup.rename(rollupKey(path), rollupKey(to));
+                        lintProvider.getBlocks().move(path.toString(), to.toString());
+                    } else {
+                        importIndex.remove(path);
+                        projectRollup.remove(rollupKey(path));
+                        lintProvider.getBlocks().forget(path.toString());
+                    }
+                }
                 break;
             case IResourceDelta.CHANGED:
                 // handle changed resource
-                logProgress(monitor, resource);
-                checkCss(resource);
+                schedule(scheduler, resource, true);
+                addImporters(resource);
                 break;
             }
             // return true to continue visiting children.
             return true;
         }
+
+        /**
+         * Can the results of a file moved from {@code from} to {@code to} be kept? Only when it was renamed within its
+         * folder, where the same {@code .csslintrc} applies and its imports resolve the same, and when neither its
+         * content nor the way it is linted changed. Its markers are moved along with it by the workspace.
+         */
+        private boolean carriesOver(IPath from, IPath to) {
+            if (from == null || to == null || !from.removeLastSegments(1).equals(to.removeLastSegments(1))) {
+                return false;
+            }
+            String fromName = from.lastSegment();
+            String toName = to.lastSegment();
+            if (!CssContentTypes.isLintable(fromName) || !CssContentTypes.isLintable(toName)
+                    || CssContentTypes.isEmbedded(fromName) != CssContentTypes.isEmbedded(toName)) {
+                return false;
+            }
+            IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+            if (excluded(root.getFile(from)) || excluded(root.getFile(to))) {
+                return false;
+            }
+            IResourceDelta added = getDelta(getProject()).findMember(to.removeFirstSegments(1));
+            return added != null && (added.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) == 0;
+        }
+
+        private void addImporters(IResource resource) {
+            if (resource instanceof IFile && isCss((IFile) resource)) {
+                importers.addAll(importIndex.importersOf(resource.getFullPath()));
+            }
+        }
+
+        /**
+         * Queue the stylesheets importing the changed ones, and those under a changed {@code .csslintrc}, unless they
+         * are queued already.
+         */
+        void scheduleDependents() throws CoreException {
+            IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+            for (IPath path : importers) {
+                IFile file = root.getFile(path);
+                if (file.exists()) {
+                    schedule(scheduler, file, false);
+                }
+            }
+            for (IContainer folder : reconfigured) {
+                if (folder.exists()) {
+                    folder.accept(new CssLintResourceVisitor(scheduler));
+                }
+            }
+        }
     }
 
     private class CssLintResourceVisitor implements IResourceVisitor {
-        private final IProgressMonitor monitor;
+        private final LintScheduler scheduler;
 
-        public CssLintResourceVisitor(IProgressMonitor monitor) {
-            this.monitor = monitor;
+        public CssLintResourceVisitor(LintScheduler scheduler) {
+            this.scheduler = scheduler;
         }
 
         public boolean visit(IResource resource) {
-            logProgress(monitor, resource);
-            checkCss(resource);
+            schedule(scheduler, resource, false);
             // return true to continue visiting children.
             return true;
         }
@@ -77,78 +164,266 @@ public class CssLintBuilder extends IncrementalProjectBuilder {
     // NB! Must match plugin.xml declaration.
     public static final String MARKER_TYPE = Activator.PLUGIN_ID + ".CSSLintProblem";
 
-    private final CssLintProvider lintProvider = new CssLintProvider();
-    private final Excluder excluder = new Excluder();
+    /** Marker attribute holding the column of the issue, as csslint reports it. */
+    public static final String COLUMN = "column";
 
-    public CssLintBuilder() {
-        lintProvider.init();
-        excluder.init();
-    }
+    /** Marker attribute holding the csslint type of the issue, warning or error. */
+    public static final String ISSUE_TYPE = "issueType";
 
-    private void addMarker(IFile file, Issue issue) {
-        try {
-            IMarker m = file.createMarker(MARKER_TYPE);
-            if (m.exists()) {
-                m.setAttribute(IMarker.MESSAGE, issue.getMessage());
-                m.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
-                m.setAttribute(IMarker.LINE_NUMBER, issue.getLine());
-                m.setAttribute(IMarker.SOURCE_ID, "CSSLint");
+    /** Marker attribute holding the id of the rule which reported the issue, when there is one. */
+    public static final String RULE_ID = "ruleId";
+
+    private final CssLintProvider lintProvider = CssLintProvider.getDefault();
+    private final Excluder excluder = lintProvider.getExcluder();
+    private final CssFileReader fileReader = new CssFileReader();
+
+    /** The shared engines and caches, as the pipelines of this builder see them. */
+    private final LintPipeline.Engines<WorkspaceSource> engines = new LintPipeline.Engines<WorkspaceSource>() {
+        public EnginePool poolFor(WorkspaceSource source) {
+            return lintProvider.poolFor(lintProvider.getConfig(source.getFile()));
+        }
+
+        public String getFingerprint(WorkspaceSource source) {
+            return lintProvider.getFingerprint(lintProvider.getConfig(source.getFile()));
+        }
+
+        public ResultStore getResults() {
+            return lintProvider.getResults();
+        }
+
+        public BlockCache getBlocks() {
+            return lintProvider.getBlocks();
+        }
+    };
+
+    private final MarkerSink<IResource> markers = new MarkerSink<IResource>() {
+        @Override
+        public void delete(IResource resource) {
+            try {
+                resource.deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_ZERO);
+            } catch (CoreException e) {
+                CssLintLog.error(e);
+            }
+        }
+
+        @Override
+        protected void create(IResource resource, Map<String, Object> attributes) {
+            try {
+                IMarker m = resource.createMarker(MARKER_TYPE);
+                if (m.exists()) {
+                    m.setAttributes(attributes);
+                }
+            } catch (CoreException e) {
+                CssLintLog.error(e);
             }
-        } catch (CoreException e) {
-            CssLintLog.error(e);
         }
+    };
+
+    /** Created on first use, as the project is not known to the constructor. */
+    private ImportIndex importIndex;
+
+    /** The stylesheet-wide rules over the whole project, when the preference asks for them. */
+    private final ProjectRollup projectRollup = new ProjectRollup();
+
+    /** Has every stylesheet of the project contributed to {@link #projectRollup} since it was switched on? */
+    private boolean rollupComplete;
+
+    /** The messages of the markers on the project, to avoid replacing them with the same ones. */
+    private List<String> projectMessages = Collections.emptyList();
+
+    public CssLintBuilder() {
+        lintProvider.init();
     }
 
     @Override
     protected IProject[] build(final int kind, @SuppressWarnings("rawtypes") Map args, IProgressMonitor monitor) throws CoreException {
+        final BuildEvent event = new BuildEvent();
+        event.begin();
         ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
             public void run(IProgressMonitor monitor) throws CoreException {
-                if (kind == FULL_BUILD) {
-                    fullBuild(monitor);
+                fileReader.clearCache();
+                if (importIndex == null) {
+                    importIndex = new ImportIndex(getProject());
+                }
+                boolean rollups = lintProvider.isProjectRollups();
+                if (!rollups) {
+                    rollupComplete = false;
+                    projectRollup.clear();
+                }
+                if (kind == FULL_BUILD || kind == CLEAN_BUILD) {
+                    fullBuild(monitor, event);
                 } else {
                     IResourceDelta delta = getDelta(getProject());
-                    if (delta == null) {
-                        fullBuild(monitor);
+                    if (delta == null || rollups && !rollupComplete) {
+                        // The project totals need every stylesheet.
+                        fullBuild(monitor, event);
                     } else {
-                        incrementalBuild(delta, monitor);
+                        incrementalBuild(delta, monitor, event);
                     }
                 }
+                updateProjectMarkers(rollups);
             }
         }, monitor);
+        importIndex.save();
+        event.end();
+        if (event.shouldCommit()) {
+            event.project = getProject().getName();
+            event.kind = kindName(kind);
+            event.commit();
+        }
         return null;
     }
 
-    private void checkCss(IResource resource) {
+    /**
+     * Remove every marker of the project in one go, and forget what was known about its stylesheets, so that the build
+     * which follows starts from nothing.
+     */
+    @Override
+    protected void clean(IProgressMonitor monitor) throws CoreException {
+        getProject().deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_INFINITE);
+        if (importIndex == null) {
+            importIndex = new ImportIndex(getProject());
+        }
+        importIndex.clear();
+        importIndex.save();
+        projectRollup.clear();
+        rollupComplete = false;
+        projectMessages = Collections.emptyList();
+        fileReader.clearCache();
+        IPath path = getProject().getFullPath();
+        lintProvider.invalidateFolder(path);
+        lintProvider.getBlocks().forget(path.toString());
+    }
+
+    private static String kindName(int kind) {
+        switch (kind) {
+        case FULL_BUILD:
+            return "full";
+        case AUTO_BUILD:
+            return "auto";
+        case CLEAN_BUILD:
+            return "clean";
+        default:
+            return "incremental";
+        }
+    }
+
+    /**
+     * Queue {@code resource} for linting if it is a css file, or markup with styles in it.
+     * @param changed whether the file was changed since the last build
+     */
+    private void schedule(LintScheduler scheduler, IResource resource, boolean changed) {
         if (!(resource instanceof IFile)) {
             return;
         }
 
         IFile file = (IFile) resource;
         if (!isCss(file)) {
+            if (changed) {
+                LintMetrics.getDefault().recordSkippedDelta();
+            }
             return;
         }
 
+        if (changed) {
+            LintScheduler.markChanged(file);
+        }
+        scheduler.add(file);
+    }
+
+    /**
+     * Lint the scheduled files, most urgent first. Files are read and linted in a {@link LintPipeline}, while this
+     * thread updates the markers of each file as its result comes back.
+     */
+    private void lintScheduled(LintScheduler scheduler, IProgressMonitor monitor, BuildEvent event) {
+        LintPipeline<WorkspaceSource> pipeline = new LintPipeline<WorkspaceSource>(engines, fileReader,
+                LintPipeline.defaultDepth());
+        RuleTimings timings = new RuleTimings();
+        IFile file;
+        while (true) {
+            while (!monitor.isCanceled() && pipeline.hasCapacity() && (file = scheduler.next()) != null) {
+                logProgress(monitor, file);
+                event.visited++;
+                if (prepare(file)) {
+                    event.linted++;
+                    pipeline.submit(new WorkspaceSource(file));
+                } else {
+                    event.skipped++;
+                }
+            }
+            if (pipeline.isEmpty()) {
+                break;
+            }
+            try {
+                LintPipeline.Outcome<WorkspaceSource> outcome = pipeline.take();
+                report(outcome);
+                if (outcome.result != null && outcome.result.getTimings() != null) {
+                    timings.add(outcome.result.getTimings());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (timings.getLints() > 0) {
+            CssLintLog.info("CSSLint rule timings for %s: %s", getProject().getName(), timings);
+        }
+    }
+
+    /**
+     * Get {@code file} ready to be linted by clearing out any existing problems.
+     * @return false if the file is excluded from linting.
+     */
+    private boolean prepare(IFile file) {
         // Clear out any existing problems.
         deleteMarkers(file);
 
         if (excluded(file)) {
+            importIndex.remove(file.getFullPath());
+            projectRollup.remove(rollupKey(file));
+            LintMetrics.getDefault().recordSkippedDelta();
+            return false;
+        }
+        return true;
+    }
+
+    /** Add markers for the result of linting a file. */
+    private void report(LintPipeline.Outcome<WorkspaceSource> outcome) {
+        if (outcome.error != null) {
+            CssLintLog.error(outcome.error);
             return;
         }
+        IFile file = outcome.source.getFile();
+        markers.add(file, outcome.result);
+        importIndex.update(file, outcome.result.getImports());
+        // Results without a summary take the file out of the totals.
+        projectRollup.update(rollupKey(file), outcome.result);
+    }
 
-        BufferedReader reader = null;
-        try {
-            CssLint lint = lintProvider.getCssLint();
-            reader = new BufferedReader(new InputStreamReader(file.getContents(), file.getCharset()));
-            CssLintResult result = lint.lint(file.getFullPath().toString(), reader);
-            for (Issue issue : result.getIssues()) {
-                addMarker(file, issue);
-            }
-        } catch (IOException e) {
-            CssLintLog.error(e);
-        } catch (CoreException e) {
-            CssLintLog.error(e);
-        } finally {
-            close(reader);
+    /** How a file is named in the project totals. */
+    private static String rollupKey(IFile file) {
+        return rollupKey(file.getFullPath());
+    }
+
+    private static String rollupKey(IPath path) {
+        return path.removeFirstSegments(1).toString();
+    }
+
+    /** Replace the markers on the project with what the project totals report now, if that changed. */
+    private void updateProjectMarkers(boolean rollups) {
+        List<Issue> issues = rollups ? projectRollup.report(lintProvider.getEnabled())
+                : Collections.<Issue> emptyList();
+        List<String> messages = new ArrayList<String>();
+        for (Issue issue : issues) {
+            messages.add(issue.getMessage());
+        }
+        if (messages.equals(projectMessages)) {
+            return;
+        }
+        projectMessages = messages;
+        markers.delete(getProject());
+        for (Issue issue : issues) {
+            markers.add(getProject(), issue);
         }
     }
 
@@ -159,32 +434,24 @@ public class CssLintBuilder extends IncrementalProjectBuilder {
         return excluder.isExcluded(file);
     }
 
+    /** Is {@code file} a stylesheet, or markup with styles in it, by its content type? */
     private boolean isCss(IFile file) {
-        return file.getName().endsWith(".css");
-    }
-
-    private void close(Closeable close) {
-        if (close == null) {
-            return;
-        }
-        try {
-            close.close();
-        } catch (IOException e) {
-        }
+        return CssContentTypes.isLintable(file.getName());
     }
 
     private void deleteMarkers(IFile file) {
-        try {
-            file.deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_ZERO);
-        } catch (CoreException e) {
-            CssLintLog.error(e);
-        }
+        markers.delete(file);
     }
 
-    private void fullBuild(final IProgressMonitor monitor) throws CoreException {
+    private void fullBuild(final IProgressMonitor monitor, BuildEvent event) throws CoreException {
         try {
             startProgress(monitor);
-            getProject().accept(new CssLintResourceVisitor(monitor));
+            LintScheduler scheduler = new LintScheduler(lintProvider.getEditorState());
+            importIndex.clear();
+            projectRollup.clear();
+            getProject().accept(new CssLintResourceVisitor(scheduler));
+            lintScheduled(scheduler, monitor, event);
+            rollupComplete = !monitor.isCanceled();
         } catch (CoreException e) {
             CssLintLog.error(e);
         } finally {
@@ -192,11 +459,15 @@ public class CssLintBuilder extends IncrementalProjectBuilder {
         }
     }
 
-    private void incrementalBuild(IResourceDelta delta, IProgressMonitor monitor)
+    private void incrementalBuild(IResourceDelta delta, IProgressMonitor monitor, BuildEvent event)
             throws CoreException {
         try {
             startProgress(monitor);
-            delta.accept(new CssLintDeltaVisitor(monitor));
+            LintScheduler scheduler = new LintScheduler(lintProvider.getEditorState());
+            CssLintDeltaVisitor visitor = new CssLintDeltaVisitor(scheduler);
+            delta.accept(visitor);
+            visitor.scheduleDependents();
+            lintScheduled(scheduler, monitor, event);
         } finally {
             monitor.done();
         }
@@ -1,5 +1,18 @@
 package com.leechwin.csslint.eclipse.builder;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
@@ -9,55 +22,406 @@ import org.eclipse.core.runtime.preferences.InstanceScope;
 
 import com.leechwin.csslint.eclipse.Activator;
 import com.leechwin.csslint.eclipse.CssLintLog;
+import com.leechwin.csslint.eclipse.engine.BlockCache;
+import com.leechwin.csslint.eclipse.engine.Cancellation;
 import com.leechwin.csslint.eclipse.engine.CssLint;
 import com.leechwin.csslint.eclipse.engine.CssLintBuilder;
+import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.EnginePool;
+import com.leechwin.csslint.eclipse.engine.LintMetrics;
 import com.leechwin.csslint.eclipse.engine.Option;
+import com.leechwin.csslint.eclipse.engine.ResultStore;
 
 /**
- * Provide a fully configured instance of {@link CssLint} on demand.
+ * Provide fully configured instances of {@link CssLint} on demand. Each instance owns its own JavaScript scope, so
+ * several of them may lint at the same time. Instances are pooled, as creating one means evaluating all of csslint.js.
+ * The pool is shared by every builder and editor in the workspace.
  */
-public class CssLintProvider {
+public class CssLintProvider implements EnginePool {
+
+    /** Whether the stylesheet-wide rules are also evaluated over each project as a whole. */
+    public static final String PROJECT_ROLLUPS_PREFERENCE = "project_rollups";
+
+    private static final CssLintProvider instance = new CssLintProvider();
+
+    /** The most engines we will ever create. */
+    private static final int MAX_ENGINES = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /** Whether engines time their rules, set through the plugin's debug options. */
+    private static final boolean RULE_TIMING = "true".equalsIgnoreCase(Platform.getDebugOption(Activator.PLUGIN_ID
+            + "/debug/ruletiming"));
+
+    /** How many lint results to keep for reuse across the workspace. */
+    private static final int STORED_RESULTS = 512;
+
+    /** How many blocks of large stylesheets to keep for reuse: a few large stylesheets' worth. */
+    private static final int STORED_BLOCKS = 1024;
+
+    /** How long to wait for an engine to come back before checking whether we may create one. */
+    private static final long WAIT_MILLIS = 100;
 
     private final CssLintBuilder builder = new CssLintBuilder();
 
-    private CssLint cssLint;
+    private final AtomicBoolean initialized = new AtomicBoolean();
+
+    private final BlockingDeque<CssLint> idle = new LinkedBlockingDeque<CssLint>();
+
+    /** The preference generation each engine was configured with, whether idle or in use. Guarded by {@code this}. */
+    private final Map<CssLint, Integer> generations = new IdentityHashMap<CssLint, Integer>();
+
+    /** The {@link LintConfig#getKey()} each engine is set up with. Guarded by {@code this}. */
+    private final Map<CssLint, String> configuredAs = new IdentityHashMap<CssLint, String>();
+
+    /** How many engines are being created right now. Guarded by {@code this}. */
+    private int pending;
+
+    /** Bumped every time the preferences change, so that stale engines are dropped. */
+    private volatile int generation;
+
+    /** The configuration of the current preferences, or null until it is next asked for. */
+    private volatile LintConfig baseConfig;
+
+    private final FolderConfigs folderConfigs = new FolderConfigs();
+
+    private final ResultStore results = new ResultStore(STORED_RESULTS);
+
+    private final BlockCache blocks = new BlockCache(STORED_BLOCKS);
+
+    private final MemoryGovernor governor = new MemoryGovernor(this);
+
+    private final Excluder excluder = new Excluder();
+
+    private volatile EditorState editorState = EditorState.NONE;
+
+    /**
+     * access method for the shared provider
+     * @return shared instance
+     */
+    public static CssLintProvider getDefault() {
+        return instance;
+    }
+
+    /** Which files are open in editors, as last set; {@link EditorState#NONE} without a workbench. */
+    public EditorState getEditorState() {
+        return editorState;
+    }
+
+    /** Tell the builders which files are open in editors, or pass {@link EditorState#NONE} to forget. */
+    public void setEditorState(EditorState state) {
+        editorState = state == null ? EditorState.NONE : state;
+    }
 
     /**
-     * Set up a listener for preference changes. This will ensure that the instance of {@link CssLint} that we have is kept in sync with the users choices. We do this by ensuring that a new lint will
-     * be created and configured on the next request.
+     * Set up a listener for preference changes. This will ensure that the instances of {@link CssLint} that we have are
+     * kept in sync with the users choices. We do this by ensuring that new lints will be created and configured on the
+     * next request. Also start shedding engines and caches when memory runs low. Safe to call more than once.
      */
     public void init() {
+        if (!initialized.compareAndSet(false, true)) {
+            return;
+        }
+        governor.start();
+        excluder.init();
         IEclipsePreferences x = InstanceScope.INSTANCE.getNode(Activator.PLUGIN_ID);
         x.addPreferenceChangeListener(new IPreferenceChangeListener() {
             public void preferenceChange(PreferenceChangeEvent ev) {
-                cssLint = null;
-                CssLintLog.info("pref %s changed; nulling cssLint", ev.getKey());
+                invalidate();
+                CssLintLog.info("pref %s changed; dropping pooled cssLints", ev.getKey());
             }
         });
     }
 
     /**
-     * Return a fully configured instance of lint. This should not be cached; each use should call this method.
+     * Take a fully configured instance of lint from the pool, creating one if there is no idle instance and the pool
+     * is not yet full. Otherwise, wait for another user to give one back. Every instance returned by this method must
+     * be handed back with {@link #release(CssLint)}.
      */
-    public CssLint getCssLint() {
-        if (cssLint == null) {
-            cssLint = builder.fromDefault();
-            configure();
+    public CssLint acquire() {
+        return acquire(getBaseConfig());
+    }
+
+    /**
+     * Take an instance of lint set up with {@code config}, preferring an idle one which already is.
+     * @see #acquire()
+     */
+    public CssLint acquire(LintConfig config) {
+        CssLint lint = take(config.getKey());
+        String current;
+        synchronized (this) {
+            current = configuredAs.get(lint);
         }
-        return cssLint;
+        if (!config.getKey().equals(current)) {
+            configure(lint, config);
+        }
+        return lint;
     }
 
-    /** Set up the current instance of lint using the current preferences. */
-    public void configure() {
-        CssLint lint = getCssLint();
-        lint.resetOptions();
+    /**
+     * Lint {@code css} with engines set up as {@code config}. Stylesheets over {@code threshold} characters are split
+     * into blocks linted across engines, and blocks unchanged since an earlier lint are not linted again.
+     * @param fingerprint identifies the options of the engines, from {@link #getFingerprint(LintConfig)}; or null if
+     *            blocks must not be reused.
+     * @param cancellation stops the lint part way, or null if it runs to the end.
+     * @throws com.leechwin.csslint.eclipse.engine.LintCancelledException if {@code cancellation} was cancelled.
+     */
+    public CssLintResult lint(String systemId, String css, LintConfig config, String fingerprint, int threshold,
+            Cancellation cancellation) {
+        return LintPipeline.lint(poolFor(config), blocks, systemId, css, fingerprint, threshold, cancellation);
+    }
+
+    /**
+     * Would the builder lint {@code file}? It must be a stylesheet or markup with styles, in a project with the CSSLint
+     * nature, and not be excluded by the preferences.
+     */
+    public boolean isLinted(IFile file) {
+        try {
+            return file.getProject().isOpen() && file.getProject().hasNature(CssLintNature.NATURE_ID)
+                    && CssContentTypes.isLintable(file.getName()) && !excluder.isExcluded(file);
+        } catch (CoreException e) {
+            CssLintLog.error(e);
+            return false;
+        }
+    }
+
+    /** The paths excluded from linting by the preferences, shared by every builder and editor. */
+    Excluder getExcluder() {
+        return excluder;
+    }
+
+    /** Return a pool whose instances are set up with {@code config}. */
+    public EnginePool poolFor(final LintConfig config) {
+        return new EnginePool() {
+            public CssLint acquire() {
+                return CssLintProvider.this.acquire(config);
+            }
+
+            public void release(CssLint lint) {
+                CssLintProvider.this.release(lint);
+            }
+        };
+    }
+
+    /** Take any instance, preferring an idle one set up as {@code key}. */
+    private CssLint take(String key) {
+        try {
+            CssLint lint = null;
+            synchronized (this) {
+                for (CssLint candidate : idle) {
+                    if (key.equals(configuredAs.get(candidate)) && idle.removeFirstOccurrence(candidate)) {
+                        lint = candidate;
+                        break;
+                    }
+                }
+            }
+            if (lint == null) {
+                lint = idle.pollFirst();
+            }
+            if (lint != null) {
+                return lint;
+            }
+            long start = System.nanoTime();
+            while (lint == null) {
+                if (reserve()) {
+                    long waited = System.nanoTime() - start;
+                    LintMetrics.getDefault().recordPoolWait(waited);
+                    CssLint created = create();
+                    created.recordAcquireWait(waited);
+                    return created;
+                }
+                // Engines in use may be dropped rather than given back, so poll rather than wait forever.
+                lint = idle.pollFirst(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            long waited = System.nanoTime() - start;
+            LintMetrics.getDefault().recordPoolWait(waited);
+            lint.recordAcquireWait(waited);
+            return lint;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a CSSLint engine", e);
+        }
+    }
+
+    /**
+     * Give back an instance obtained from {@link #acquire()}. Instances configured with out of date preferences are
+     * thrown away.
+     */
+    public synchronized void release(CssLint lint) {
+        Integer configured = generations.get(lint);
+        if (configured != null && configured.intValue() == generation) {
+            idle.offerFirst(lint);
+        } else {
+            unreserve(lint);
+        }
+    }
+
+    /** Drop every idle instance, and make sure instances in use are not returned to the pool. */
+    public synchronized void invalidate() {
+        generation++;
+        baseConfig = null;
+        results.clear();
+        blocks.clear();
+        dropIdle();
+    }
+
+    /**
+     * Drop every idle instance, to be created again when needed, but keep the preferences they were set up with.
+     * @return how many were dropped.
+     */
+    synchronized int dropIdle() {
+        int dropped = 0;
+        CssLint lint;
+        while ((lint = idle.pollFirst()) != null) {
+            unreserve(lint);
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /** Stop watching the heap, when the plug-in stops. */
+    public void dispose() {
+        governor.stop();
+    }
+
+    /** Make room for one more engine, if the pool is not full. */
+    private synchronized boolean reserve() {
+        if (generations.size() + pending < MAX_ENGINES) {
+            pending++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Forget about an engine. */
+    private synchronized void unreserve(CssLint lint) {
+        generations.remove(lint);
+        configuredAs.remove(lint);
+    }
+
+    /** Create a new instance of lint in a slot made by {@link #reserve()}, set up using the current preferences. */
+    private CssLint create() {
+        int configured = generation;
+        CssLint lint = null;
+        try {
+            CssLint created = builder.fromDefault();
+            configure(created);
+            lint = created;
+        } finally {
+            synchronized (this) {
+                pending--;
+                if (lint != null) {
+                    generations.put(lint, Integer.valueOf(configured));
+                }
+            }
+        }
+        return lint;
+    }
+
+    /** The results shared by every builder in the workspace. */
+    public ResultStore getResults() {
+        return results;
+    }
+
+    /** The blocks of large stylesheets shared by every builder in the workspace. */
+    public BlockCache getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Identify how engines set up with {@code config} lint, so that results linted with other options are not reused.
+     * Returns null when results must not be shared at all.
+     */
+    public String getFingerprint(LintConfig config) {
+        if (RULE_TIMING) {
+            // Every lint has timings of its own.
+            return null;
+        }
+        // Results carry a summary too.
+        return isProjectRollups() ? config.getKey() + PROJECT_ROLLUPS_PREFERENCE + ';' : config.getKey();
+    }
+
+    /** Return the configuration of the current preferences. */
+    public LintConfig getBaseConfig() {
+        LintConfig current = baseConfig;
+        if (current == null) {
+            int configured = generation;
+            Map<Option, String> options = new EnumMap<Option, String>(Option.class);
+            IPreferencesService prefs = Platform.getPreferencesService();
+            for (Option o : Option.values()) {
+                String value = prefs.getString(Activator.PLUGIN_ID, o.getLowerName(), null, null);
+                if (value != null) {
+                    options.put(o, value);
+                }
+            }
+            current = new LintConfig(options);
+            synchronized (this) {
+                if (configured == generation) {
+                    baseConfig = current;
+                    folderConfigs.reset(current);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Return the configuration of {@code file}, from the preferences and the {@code .csslintrc} files above it.
+     */
+    public LintConfig getConfig(IFile file) {
+        LintConfig base = getBaseConfig();
+        if (folderConfigs.getBase() != base) {
+            // Preferences changed while the base was being read; do without the folders this once.
+            return base;
+        }
+        return folderConfigs.get(file.getParent());
+    }
+
+    /** Forget the configurations of {@code folder} and the folders below it, as a {@code .csslintrc} changed. */
+    void invalidateFolder(IPath folder) {
+        folderConfigs.invalidate(folder);
+    }
+
+    /**
+     * Forget the configuration of every folder, to be worked out again when next needed.
+     * @return how many were forgotten.
+     */
+    int forgetFolderConfigs() {
+        return folderConfigs.forgetAll();
+    }
+
+    /** Are the stylesheet-wide rules to be evaluated over each project as a whole? */
+    public boolean isProjectRollups() {
+        return Platform.getPreferencesService().getBoolean(Activator.PLUGIN_ID, PROJECT_ROLLUPS_PREFERENCE, false,
+                null);
+    }
+
+    /** Return the boolean options which are switched on in the current preferences. */
+    public Set<Option> getEnabled() {
+        Set<Option> enabled = EnumSet.noneOf(Option.class);
         IPreferencesService prefs = Platform.getPreferencesService();
         for (Option o : Option.values()) {
-            String value = prefs.getString(Activator.PLUGIN_ID, o.getLowerName(), null, null);
-            if (value != null) {
-                lint.addOption(o, value);
+            if (o.getType() == Boolean.class && prefs.getBoolean(Activator.PLUGIN_ID, o.getLowerName(), false, null)) {
+                enabled.add(o);
             }
         }
+        return enabled;
+    }
+
+    /** Set up an instance of lint using the current preferences. */
+    public void configure(CssLint lint) {
+        configure(lint, getBaseConfig());
+    }
+
+    /** Set up an instance of lint using {@code config}. */
+    public void configure(CssLint lint, LintConfig config) {
+        lint.resetOptions();
+        lint.setTimed(RULE_TIMING);
+        lint.setSummarized(isProjectRollups());
+        for (Map.Entry<Option, String> entry : config.getOptions().entrySet()) {
+            lint.addOption(entry.getKey(), entry.getValue());
+        }
+        synchronized (this) {
+            configuredAs.put(lint, config.getKey());
+        }
     }
 
 }
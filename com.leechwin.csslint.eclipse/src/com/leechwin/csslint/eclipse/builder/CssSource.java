@@ -0,0 +1,31 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * A file to be read and linted by a {@link LintPipeline}. Builds lint the files of the workspace; tools which run
+ * without one, such as the benchmarks, provide files of their own.
+ */
+public interface CssSource {
+
+    /** The path issues are reported against and exclusions are matched with, using {@code /} as separator. */
+    String getPath();
+
+    /** Is the file markup with styles in it, which must be extracted before linting? */
+    boolean isEmbedded();
+
+    /** Read all of the raw bytes of the file. */
+    byte[] readBytes() throws IOException, CoreException;
+
+    /** The charset set on the file itself, or null if it has the one of its folder. */
+    String getCharset() throws CoreException;
+
+    /** The path of the folder of the file, under which the charset of the folder is remembered. */
+    String getFolderPath();
+
+    /** The default charset of the folder of the file. */
+    String getFolderCharset() throws CoreException;
+
+}
@@ -0,0 +1,43 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * Which files the user has open in editors, so that the builder can lint those first. The workbench provides one
+ * through {@link CssLintProvider#setEditorState(EditorState)}; until then, and without a workbench, no file is open.
+ * May be called from any thread.
+ */
+public interface EditorState {
+
+    /** The state when no editors are known. */
+    EditorState NONE = new EditorState() {
+        public int getGeneration() {
+            return 0;
+        }
+
+        public boolean isActive(IFile file) {
+            return false;
+        }
+
+        public boolean isVisible(IFile file) {
+            return false;
+        }
+
+        public boolean isOpen(IFile file) {
+            return false;
+        }
+    };
+
+    /** A counter which changes every time the set of open, visible or active editors changes. */
+    int getGeneration();
+
+    /** Is {@code file} shown in the active editor? */
+    boolean isActive(IFile file);
+
+    /** Is {@code file} shown in an editor that is currently visible? */
+    boolean isVisible(IFile file);
+
+    /** Is {@code file} open in any editor? */
+    boolean isOpen(IFile file);
+
+}
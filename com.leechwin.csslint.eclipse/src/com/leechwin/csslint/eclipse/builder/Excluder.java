@@ -1,6 +1,7 @@
 package com.leechwin.csslint.eclipse.builder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -15,16 +16,17 @@ import org.eclipse.core.runtime.preferences.InstanceScope;
 import com.leechwin.csslint.eclipse.Activator;
 
 /**
- * Maintain the list of paths to exclude from linting. Will be automatically updated when the prefs value changes.
+ * Maintain the list of paths to exclude from linting. Will be automatically updated when the prefs value changes. May
+ * be read from any thread.
  */
 public class Excluder {
     public static final String EXCLUDE_PATH_REGEXES_PREFERENCE = "exclude_path_regexes";
 
-    private final List<Pattern> excludes = new ArrayList<Pattern>();
+    /** Replaced as a whole, never changed, so that readers on other threads see one list or the other. */
+    private volatile List<Pattern> excludes = Collections.emptyList();
 
     public void init() {
-        readPref();
-        monitor();
+        Preferences.follow(this);
     }
 
     /** Return the list of patterns to exclude from linting. */
@@ -32,11 +34,24 @@ public class Excluder {
         return new ArrayList<Pattern>(excludes);
     }
 
+    /**
+     * Exclude the paths matching any of the comma separated {@code regexes}, rather than those of the preferences. For
+     * use where there are no preferences; {@link #init()} is not called then.
+     */
+    public void setExcludes(String regexes) {
+        parsePref(regexes);
+    }
+
     /** Should {@code file} be excluded from linting? */
     public boolean isExcluded(IFile file) {
-        String filePath = file.getFullPath().toString();
-        if (!excludes.isEmpty()) {
-            for (Pattern p : excludes) {
+        return isExcluded(file.getFullPath().toString());
+    }
+
+    /** Should the file at {@code filePath}, a workspace path or one like it, be excluded from linting? */
+    public boolean isExcluded(String filePath) {
+        List<Pattern> current = excludes;
+        if (!current.isEmpty()) {
+            for (Pattern p : current) {
                 if (p.matcher(filePath).find()) {
                     return true;
                 }
@@ -45,31 +60,33 @@ public class Excluder {
         return false;
     }
 
-    private void monitor() {
-        IEclipsePreferences scope = InstanceScope.INSTANCE.getNode(Activator.PLUGIN_ID);
-        scope.addPreferenceChangeListener(new IPreferenceChangeListener() {
-            public void preferenceChange(PreferenceChangeEvent ev) {
-                if (ev.getKey().equals(EXCLUDE_PATH_REGEXES_PREFERENCE)) {
-                    parsePref((String) ev.getNewValue());
-                }
-            }
-        });
-    }
-
     private void parsePref(String pref) {
-        excludes.clear();
-        if (pref.isEmpty()) {
-            return;
-        }
-        for (String path : pref.split(",")) {
-            excludes.add(Pattern.compile(path));
+        List<Pattern> parsed = new ArrayList<Pattern>();
+        if (pref != null && !pref.isEmpty()) {
+            for (String path : pref.split(",")) {
+                parsed.add(Pattern.compile(path));
+            }
         }
-
+        excludes = Collections.unmodifiableList(parsed);
     }
 
-    private void readPref() {
-        IPreferencesService prefs = Platform.getPreferencesService();
-        parsePref(prefs.getString(Activator.PLUGIN_ID, EXCLUDE_PATH_REGEXES_PREFERENCE, "", null));
+    /**
+     * Reads the preference and follows its changes. Kept apart, so that excluders can be loaded and used where there
+     * are no preferences.
+     */
+    private static class Preferences {
+        static void follow(final Excluder excluder) {
+            IPreferencesService prefs = Platform.getPreferencesService();
+            excluder.parsePref(prefs.getString(Activator.PLUGIN_ID, EXCLUDE_PATH_REGEXES_PREFERENCE, "", null));
+            IEclipsePreferences scope = InstanceScope.INSTANCE.getNode(Activator.PLUGIN_ID);
+            scope.addPreferenceChangeListener(new IPreferenceChangeListener() {
+                public void preferenceChange(PreferenceChangeEvent ev) {
+                    if (ev.getKey().equals(EXCLUDE_PATH_REGEXES_PREFERENCE)) {
+                        excluder.parsePref((String) ev.getNewValue());
+                    }
+                }
+            });
+        }
     }
 
 }
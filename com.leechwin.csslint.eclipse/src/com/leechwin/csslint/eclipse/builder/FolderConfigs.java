@@ -0,0 +1,112 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import com.leechwin.csslint.eclipse.CssLintLog;
+import com.leechwin.csslint.eclipse.engine.Option;
+
+/**
+ * Work out the {@link LintConfig} of each folder from the {@code .csslintrc} files of the folder and the folders above
+ * it, starting from the preferences. Each folder is worked out once and remembered, so that looking up the
+ * configuration of a file is a single map lookup however deep it is. When a {@code .csslintrc} changes, the folder
+ * and everything below it is forgotten. See {@link RcFile} for what the files say.
+ */
+class FolderConfigs {
+
+    static final String RC_FILE = RcFile.NAME;
+
+    private final ConcurrentMap<IPath, LintConfig> resolved = new ConcurrentHashMap<IPath, LintConfig>();
+
+    /** One instance per distinct configuration. */
+    private final ConcurrentMap<String, LintConfig> interned = new ConcurrentHashMap<String, LintConfig>();
+
+    private volatile LintConfig base;
+
+    /** Start again from {@code base}, the configuration of folders without any {@code .csslintrc} above them. */
+    void reset(LintConfig base) {
+        this.base = base;
+        resolved.clear();
+        interned.clear();
+        interned.put(base.getKey(), base);
+    }
+
+    LintConfig getBase() {
+        return base;
+    }
+
+    /** Return the configuration of the files in {@code folder}. */
+    LintConfig get(IContainer folder) {
+        LintConfig config = resolved.get(folder.getFullPath());
+        if (config != null) {
+            return config;
+        }
+        LintConfig root = base;
+        IContainer parent = folder.getParent();
+        config = parent == null || folder.getType() == IResource.ROOT ? root : get(parent);
+        if (folder.getType() != IResource.ROOT) {
+            IFile rc = folder.getFile(new Path(RC_FILE));
+            if (rc.exists()) {
+                config = intern(config.with(read(rc)));
+            }
+        }
+        if (root == base) {
+            // Not worked out from preferences which have just changed.
+            resolved.put(folder.getFullPath(), config);
+        }
+        return config;
+    }
+
+    /**
+     * Forget the configuration of every folder, to be worked out again when next needed.
+     * @return how many folders were forgotten.
+     */
+    int forgetAll() {
+        int size = resolved.size();
+        resolved.clear();
+        return size;
+    }
+
+    /** Forget the configuration of {@code folder} and every folder below it. */
+    void invalidate(IPath folder) {
+        for (IPath path : resolved.keySet()) {
+            if (folder.isPrefixOf(path)) {
+                resolved.remove(path);
+            }
+        }
+    }
+
+    private LintConfig intern(LintConfig config) {
+        LintConfig existing = interned.putIfAbsent(config.getKey(), config);
+        return existing == null ? config : existing;
+    }
+
+    /** Read the options set by a {@code .csslintrc}. A file which cannot be read sets nothing. */
+    private static Map<Option, String> read(IFile rc) {
+        try (InputStream in = rc.getContents(true)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            return RcFile.parse(new String(bytes.toByteArray(), "UTF-8"));
+        } catch (CoreException | IOException e) {
+            CssLintLog.error(e);
+        }
+        return new EnumMap<Option, String>(Option.class);
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import com.leechwin.csslint.eclipse.Activator;
+import com.leechwin.csslint.eclipse.CssLintLog;
+
+/**
+ * Which stylesheets of a project import which, as found by the <i>import-edges</i> rule in csslint-eclipse.js. When a
+ * stylesheet changes, the builder uses this to re-lint every stylesheet that imports it, directly or not, and nothing
+ * else.
+ * <p>
+ * The index survives restarts in the project's working location, so that the first incremental build after a restart
+ * still knows the imports. It is only used from the build thread of its project, and is not thread safe.
+ */
+class ImportIndex {
+
+    private static final String FILE_NAME = "imports.txt";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final IProject project;
+
+    /** The stylesheets each stylesheet imports. */
+    private final Map<IPath, Set<IPath>> imports = new HashMap<IPath, Set<IPath>>();
+
+    /** The stylesheets importing each stylesheet. */
+    private final Map<IPath, Set<IPath>> importers = new HashMap<IPath, Set<IPath>>();
+
+    /** Bumped when memory runs low, so that every index is dropped once it has been saved. */
+    private static final AtomicInteger shedding = new AtomicInteger();
+
+    private boolean loaded;
+    private boolean dirty;
+
+    /** The value of {@link #shedding} when the index was loaded. */
+    private int loadedAt;
+
+    ImportIndex(IProject project) {
+        this.project = project;
+    }
+
+    /**
+     * Replace what {@code file} imports.
+     * @param uris the URIs of its {@code @import} rules, as written.
+     */
+    void update(IFile file, List<String> uris) {
+        load();
+        IPath importer = file.getFullPath();
+        Set<IPath> targets = new LinkedHashSet<IPath>();
+        for (String uri : uris) {
+            IPath target = resolve(importer, uri);
+            if (target != null) {
+                targets.add(target);
+            }
+        }
+        Set<IPath> old = imports.get(importer);
+        if (old == null ? targets.isEmpty() : old.equals(targets)) {
+            return;
+        }
+        remove(importer);
+        for (IPath target : targets) {
+            link(importer, target);
+        }
+    }
+
+    /** Forget what the stylesheet at {@code path} imports. What imports it is kept, in case it comes back. */
+    void remove(IPath path) {
+        load();
+        Set<IPath> targets = imports.remove(path);
+        if (targets == null) {
+            return;
+        }
+        for (IPath target : targets) {
+            Set<IPath> set = importers.get(target);
+            if (set != null && set.remove(path) && set.isEmpty()) {
+                importers.remove(target);
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * Move what the stylesheet at {@code from} imports to {@code to}, in the same folder, where its relative URIs
+     * resolve to the same stylesheets. What imports {@code from} is kept, as those stylesheets still refer to it.
+     */
+    void rename(IPath from, IPath to) {
+        load();
+        Set<IPath> targets = imports.get(from);
+        remove(from);
+        remove(to);
+        if (targets != null) {
+            for (IPath target : targets) {
+                link(to, target);
+            }
+        }
+    }
+
+    /** Forget everything, before a full build finds it all again. Any saved copy is replaced on the next save. */
+    void clear() {
+        loaded = true;
+        loadedAt = shedding.get();
+        dirty = true;
+        imports.clear();
+        importers.clear();
+    }
+
+    /**
+     * Return the stylesheets which import the one at {@code path}, directly or through others, nearest first. Import
+     * cycles are followed only once.
+     */
+    Set<IPath> importersOf(IPath path) {
+        load();
+        Set<IPath> found = new LinkedHashSet<IPath>();
+        Deque<IPath> pending = new ArrayDeque<IPath>();
+        pending.add(path);
+        while (!pending.isEmpty()) {
+            Set<IPath> set = importers.get(pending.poll());
+            if (set == null) {
+                continue;
+            }
+            for (IPath importer : set) {
+                if (!importer.equals(path) && found.add(importer)) {
+                    pending.add(importer);
+                }
+            }
+        }
+        return found.isEmpty() ? Collections.<IPath> emptySet() : found;
+    }
+
+    /**
+     * Return the stylesheet that {@code uri} refers to, or null when it is not in the workspace. Relative URIs are
+     * resolved against the folder of the importer, and absolute ones against the project.
+     */
+    static IPath resolve(IPath importer, String uri) {
+        int end = uri.length();
+        for (char c : new char[] { '?', '#' }) {
+            int i = uri.indexOf(c);
+            if (i >= 0 && i < end) {
+                end = i;
+            }
+        }
+        uri = uri.substring(0, end).trim();
+        if (uri.isEmpty() || uri.startsWith("//") || uri.matches("^[a-zA-Z][a-zA-Z0-9+.-]*:.*")) {
+            // Elsewhere on the web.
+            return null;
+        }
+        if (uri.startsWith("/")) {
+            return importer.uptoSegment(1).append(uri);
+        }
+        IPath path = importer.removeLastSegments(1).append(uri);
+        // Climbing out of the project leaves ".." at the start.
+        return path.segmentCount() > 0 && "..".equals(path.segment(0)) ? null : path;
+    }
+
+    private void link(IPath importer, IPath target) {
+        Set<IPath> targets = imports.get(importer);
+        if (targets == null) {
+            targets = new LinkedHashSet<IPath>();
+            imports.put(importer, targets);
+        }
+        targets.add(target);
+        Set<IPath> set = importers.get(target);
+        if (set == null) {
+            set = new LinkedHashSet<IPath>();
+            importers.put(target, set);
+        }
+        set.add(importer);
+        dirty = true;
+    }
+
+    private File storage() {
+        return project.getWorkingLocation(Activator.PLUGIN_ID).append(FILE_NAME).toFile();
+    }
+
+    /** Read the index saved by an earlier session, the first time it is needed. */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        loadedAt = shedding.get();
+        File file = storage();
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    link(new Path(line.substring(0, tab)), new Path(line.substring(tab + 1)));
+                }
+            }
+        } catch (IOException e) {
+            // Start over; the next full build fills it in again.
+            CssLintLog.error(e);
+            imports.clear();
+            importers.clear();
+        }
+        dirty = false;
+    }
+
+    /**
+     * Ask every index to let go of its contents once it has been saved. The build thread of each project does so at
+     * the end of its next build, and the index is read back from disk when it is next needed.
+     */
+    static void shed() {
+        shedding.incrementAndGet();
+    }
+
+    /** Write the index out if it changed, replacing the old copy in one go. */
+    void save() {
+        write();
+        if (loaded && !dirty && loadedAt != shedding.get()) {
+            imports.clear();
+            importers.clear();
+            loaded = false;
+        }
+    }
+
+    private void write() {
+        if (!dirty) {
+            return;
+        }
+        File file = storage();
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), UTF8)) {
+                for (Map.Entry<IPath, Set<IPath>> entry : imports.entrySet()) {
+                    for (IPath target : entry.getValue()) {
+                        writer.write(entry.getKey().toString());
+                        writer.write('\t');
+                        writer.write(target.toString());
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            CssLintLog.error(e);
+        }
+    }
+
+}
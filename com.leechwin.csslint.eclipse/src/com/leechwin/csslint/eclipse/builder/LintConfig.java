@@ -0,0 +1,49 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.leechwin.csslint.eclipse.engine.Option;
+
+/**
+ * The options a file is linted with: the preferences, overridden by the {@code .csslintrc} files of its folder and
+ * the folders above it. Folders with the same options share the same instance, and engines configured for one of
+ * them can lint files of the others without being set up again.
+ */
+public class LintConfig {
+
+    private final Map<Option, String> options;
+    private final String key;
+
+    LintConfig(Map<Option, String> options) {
+        this.options = Collections.unmodifiableMap(new EnumMap<Option, String>(options));
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Option, String> entry : this.options.entrySet()) {
+            sb.append(entry.getKey().getLowerName()).append('=').append(entry.getValue()).append(';');
+        }
+        this.key = sb.toString();
+    }
+
+    /** Return each option which is set, with its value as a string, as in the preferences. */
+    public Map<Option, String> getOptions() {
+        return options;
+    }
+
+    /** Return a string which is equal for equal configurations. */
+    public String getKey() {
+        return key;
+    }
+
+    /** Return this configuration with some options changed. */
+    LintConfig with(Map<Option, String> overrides) {
+        if (overrides.isEmpty()) {
+            return this;
+        }
+        Map<Option, String> merged = new EnumMap<Option, String>(Option.class);
+        merged.putAll(options);
+        merged.putAll(overrides);
+        return new LintConfig(merged);
+    }
+
+}
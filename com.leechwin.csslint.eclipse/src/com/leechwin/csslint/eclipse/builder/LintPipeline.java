@@ -0,0 +1,205 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.leechwin.csslint.eclipse.engine.BlockCache;
+import com.leechwin.csslint.eclipse.engine.Cancellation;
+import com.leechwin.csslint.eclipse.engine.ChunkedLinter;
+import com.leechwin.csslint.eclipse.engine.CssLint;
+import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.EnginePool;
+import com.leechwin.csslint.eclipse.engine.ResultStore;
+import com.leechwin.csslint.eclipse.engine.StyleExtractor;
+
+/**
+ * Overlap reading files with linting them. Reader threads fetch and decode the next files while engine threads lint
+ * the ones already read; finished results queue up for the build thread, which is the only one allowed to touch
+ * markers. The number of files in flight is bounded, so that memory stays capped however many files are scheduled.
+ * <p>
+ * A pipeline is used by a single build thread, which alternates between {@link #submit(CssSource)} while
+ * {@link #hasCapacity()} and {@link #take()}. Nothing here needs a workspace, so tools outside of a workbench can
+ * run the same pipeline over files of their own.
+ * @param <S> the files it lints.
+ */
+public class LintPipeline<S extends CssSource> {
+
+    /** The outcome of linting one file: either a result or the exception that prevented it. */
+    public static class Outcome<S> {
+        public final S source;
+        public final CssLintResult result;
+        public final Throwable error;
+
+        Outcome(S source, CssLintResult result, Throwable error) {
+            this.source = source;
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    /** What a pipeline lints with: the engines and caches of {@link CssLintProvider} during a build. */
+    public interface Engines<S> {
+        /** Return a pool of engines set up with the options of {@code source}. */
+        EnginePool poolFor(S source);
+
+        /**
+         * Identify the options {@code source} is linted with, so that results of identical stylesheets are shared.
+         * Returns null when results must not be shared at all.
+         */
+        String getFingerprint(S source);
+
+        /** The results shared by identical stylesheets. */
+        ResultStore getResults();
+
+        /** The blocks of large stylesheets, kept for when they are linted again. */
+        BlockCache getBlocks();
+    }
+
+    /** Reading is mostly waiting, so use more threads than cores. */
+    private static final int READER_THREADS = 4;
+
+    private static final int LINT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService readers = newExecutor("CSSLint reader", READER_THREADS);
+    private static final ExecutorService linters = newExecutor("CSSLint worker", LINT_THREADS);
+    private static final ExecutorService chunkers = newExecutor("CSSLint chunk", LINT_THREADS);
+
+    private final Engines<S> engines;
+    private final CssFileReader fileReader;
+    private final int depth;
+    private final BlockingQueue<Outcome<S>> done = new LinkedBlockingQueue<Outcome<S>>();
+
+    /** Files submitted but not yet taken. Only used by the build thread. */
+    private int inFlight;
+
+    /**
+     * @param depth how many files may be read or linted ahead of the build thread.
+     */
+    public LintPipeline(Engines<S> engines, CssFileReader fileReader, int depth) {
+        this.engines = engines;
+        this.fileReader = fileReader;
+        this.depth = Math.max(1, depth);
+    }
+
+    /** The default depth: enough to keep every engine busy while the next files are read. */
+    public static int defaultDepth() {
+        return LINT_THREADS + READER_THREADS;
+    }
+
+    /** May another file be submitted without exceeding the depth? */
+    public boolean hasCapacity() {
+        return inFlight < depth;
+    }
+
+    /** Is there nothing left to take? */
+    public boolean isEmpty() {
+        return inFlight == 0;
+    }
+
+    /** Start reading and linting {@code file}. */
+    public void submit(final S file) {
+        inFlight++;
+        readers.execute(new Runnable() {
+            public void run() {
+                final String css;
+                try {
+                    String text = fileReader.read(file);
+                    css = file.isEmbedded() ? StyleExtractor.extract(text) : text;
+                } catch (Throwable e) {
+                    done.add(new Outcome<S>(file, null, e));
+                    return;
+                }
+                if (css == null) {
+                    // Markup without any styles.
+                    done.add(new Outcome<S>(file, CssLintResult.empty(), null));
+                    return;
+                }
+                linters.execute(new Runnable() {
+                    public void run() {
+                        done.add(lint(file, css));
+                    }
+                });
+            }
+        });
+    }
+
+    /** Wait for the next file to be finished, in whatever order they complete. */
+    public Outcome<S> take() throws InterruptedException {
+        Outcome<S> outcome = done.take();
+        inFlight--;
+        return outcome;
+    }
+
+    private Outcome<S> lint(S file, final String css) {
+        final String systemId = file.getPath();
+        try {
+            final EnginePool pool = engines.poolFor(file);
+            final String fingerprint = engines.getFingerprint(file);
+            if (fingerprint == null) {
+                CssLintResult result = lint(pool, engines.getBlocks(), systemId, css, null,
+                        ChunkedLinter.DEFAULT_THRESHOLD, null);
+                return new Outcome<S>(file, result, null);
+            }
+            // Identical stylesheets anywhere in the workspace are only linted once.
+            CssLintResult result = engines.getResults().get(fingerprint, css, new Callable<CssLintResult>() {
+                public CssLintResult call() {
+                    return lint(pool, engines.getBlocks(), systemId, css, fingerprint, ChunkedLinter.DEFAULT_THRESHOLD,
+                            null);
+                }
+            });
+            return new Outcome<S>(file, result, null);
+        } catch (Throwable e) {
+            return new Outcome<S>(file, null, e);
+        }
+    }
+
+    /**
+     * Lint {@code css} with engines from {@code pool}. Stylesheets over {@code threshold} characters are split into
+     * blocks linted across engines, and blocks unchanged since an earlier lint are taken from {@code blocks}.
+     * @param fingerprint identifies the options of the engines, so that blocks can be reused; or null if they must not
+     *            be.
+     * @param cancellation stops the lint part way, or null if it runs to the end.
+     * @throws com.leechwin.csslint.eclipse.engine.LintCancelledException if {@code cancellation} was cancelled.
+     */
+    static CssLintResult lint(EnginePool pool, BlockCache blocks, String systemId, String css, String fingerprint,
+            int threshold, Cancellation cancellation) {
+        ChunkedLinter chunkedLinter = new ChunkedLinter(pool, chunkers, threshold, LINT_THREADS, blocks);
+        if (chunkedLinter.accepts(css)) {
+            // Large files are split across engines; we must not hold one ourselves meanwhile.
+            return chunkedLinter.lint(systemId, css, fingerprint, cancellation);
+        }
+        if (cancellation != null) {
+            // Do not wait for an engine only to throw its result away.
+            cancellation.check();
+        }
+        CssLint lint = pool.acquire();
+        try {
+            return lint.lint(systemId, css, cancellation);
+        } finally {
+            pool.release(lint);
+        }
+    }
+
+    /** A pool of daemon threads which go away when the workspace is idle. */
+    private static ExecutorService newExecutor(final String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Order the files of a build so that the ones the user is looking at get linted first: the active editor, then
+ * visible editors, then open editors, then recently changed files, then everything else in visit order. Priorities are
+ * re-evaluated whenever the set of editors changes.
+ */
+class LintScheduler {
+
+    private static final int ACTIVE = 0;
+    private static final int VISIBLE = 1;
+    private static final int OPEN = 2;
+    private static final int RECENT = 3;
+    private static final int OTHER = 4;
+
+    /** How many recently changed files to remember. */
+    private static final int RECENT_LIMIT = 256;
+
+    /** How long a change counts as recent. */
+    private static final long RECENT_MILLIS = 10 * 60 * 1000L;
+
+    /** Recently changed files, least recently touched first. Shared by all builders. */
+    private static final Map<IPath, Long> recent = new LinkedHashMap<IPath, Long>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<IPath, Long> eldest) {
+            return size() > RECENT_LIMIT;
+        }
+    };
+
+    /** A file waiting to be linted, with its priority as of the last evaluation. */
+    private class Entry {
+        final IFile file;
+        final long sequence;
+        int priority;
+
+        Entry(IFile file, long sequence) {
+            this.file = file;
+            this.sequence = sequence;
+            this.priority = priorityOf(file);
+        }
+    }
+
+    private final EditorState tracker;
+
+    private PriorityQueue<Entry> queue = newQueue(16);
+    private final Set<IFile> queued = new HashSet<IFile>();
+    private long sequence;
+    private int generation;
+
+    /**
+     * @param tracker which files are open in editors.
+     */
+    LintScheduler(EditorState tracker) {
+        this.tracker = tracker;
+        this.generation = tracker.getGeneration();
+    }
+
+    /** Remember that {@code file} was changed, so that it is scheduled ahead of untouched files. */
+    static void markChanged(IFile file) {
+        synchronized (recent) {
+            recent.put(file.getFullPath(), Long.valueOf(System.currentTimeMillis()));
+        }
+    }
+
+    /** Was {@code file} changed recently? */
+    private static boolean isRecent(IFile file) {
+        synchronized (recent) {
+            Long when = recent.get(file.getFullPath());
+            return when != null && System.currentTimeMillis() - when.longValue() < RECENT_MILLIS;
+        }
+    }
+
+    /** Queue {@code file} for linting, unless it has been queued already. */
+    void add(IFile file) {
+        if (!queued.add(file)) {
+            return;
+        }
+        queue.add(new Entry(file, sequence++));
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /** Remove and return the most urgent file, or null when there is nothing left. */
+    IFile next() {
+        reprioritize();
+        Entry entry = queue.poll();
+        return entry == null ? null : entry.file;
+    }
+
+    /** If the editors changed since we last looked, recompute every priority. */
+    private void reprioritize() {
+        int current = tracker.getGeneration();
+        if (current == generation) {
+            return;
+        }
+        generation = current;
+        PriorityQueue<Entry> rebuilt = newQueue(queue.size());
+        for (Entry entry : queue) {
+            entry.priority = priorityOf(entry.file);
+            rebuilt.add(entry);
+        }
+        queue = rebuilt;
+    }
+
+    private int priorityOf(IFile file) {
+        if (tracker.isActive(file)) {
+            return ACTIVE;
+        } else if (tracker.isVisible(file)) {
+            return VISIBLE;
+        } else if (tracker.isOpen(file)) {
+            return OPEN;
+        } else if (isRecent(file)) {
+            return RECENT;
+        } else {
+            return OTHER;
+        }
+    }
+
+    private PriorityQueue<Entry> newQueue(int capacity) {
+        return new PriorityQueue<Entry>(Math.max(capacity, 1), new Comparator<Entry>() {
+            public int compare(Entry a, Entry b) {
+                if (a.priority != b.priority) {
+                    return a.priority < b.priority ? -1 : 1;
+                }
+                return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+            }
+        });
+    }
+
+}
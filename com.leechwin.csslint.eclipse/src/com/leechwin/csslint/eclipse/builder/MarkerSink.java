@@ -0,0 +1,57 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IMarker;
+
+import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.Issue;
+
+/**
+ * Where the markers of linted files go: the resources of the workspace during a build, or a stand-in where there is
+ * no workspace. Every sink is given the same attributes for an issue, those the problems view shows.
+ * @param <T> what the markers are on.
+ */
+public abstract class MarkerSink<T> {
+
+    /** Remove the CSSLint markers of {@code target}. */
+    public abstract void delete(T target);
+
+    /** Add a CSSLint marker with {@code attributes} to {@code target}. */
+    protected abstract void create(T target, Map<String, Object> attributes);
+
+    /** Add a marker for each issue of {@code result}, and for each rollup. */
+    public void add(T target, CssLintResult result) {
+        for (Issue issue : result.getIssues()) {
+            add(target, issue);
+        }
+        for (Issue issue : result.getRollups()) {
+            add(target, issue);
+        }
+    }
+
+    /** Add a marker for {@code issue}. */
+    public void add(T target, Issue issue) {
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(IMarker.MESSAGE, issue.getMessage());
+        attributes.put(IMarker.SEVERITY, Integer.valueOf(IMarker.SEVERITY_WARNING));
+        if (issue.getLine() > 0) {
+            // Rollups are about the whole file, and have no line.
+            attributes.put(IMarker.LINE_NUMBER, Integer.valueOf(issue.getLine()));
+        }
+        attributes.put(CssLintBuilder.COLUMN, Integer.valueOf(issue.getColumn()));
+        attributes.put(CssLintBuilder.ISSUE_TYPE, issue.getType());
+        if (issue.getRule() != null) {
+            attributes.put(CssLintBuilder.RULE_ID, issue.getRule());
+        }
+        if (issue.getCharStart() >= 0) {
+            // Minified files are all on one line; say exactly where on it.
+            attributes.put(IMarker.CHAR_START, Integer.valueOf(issue.getCharStart()));
+            attributes.put(IMarker.CHAR_END, Integer.valueOf(issue.getCharEnd()));
+        }
+        attributes.put(IMarker.SOURCE_ID, "CSSLint");
+        create(target, attributes);
+    }
+
+}
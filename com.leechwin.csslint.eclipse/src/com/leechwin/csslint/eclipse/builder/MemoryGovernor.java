@@ -0,0 +1,140 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import com.leechwin.csslint.eclipse.CssLintLog;
+import com.leechwin.csslint.eclipse.engine.BlockCache;
+import com.leechwin.csslint.eclipse.engine.ResultStore;
+
+/**
+ * Let go of what lint keeps in memory when the heap runs low, so that a large build slows down rather than running
+ * the IDE out of memory. The governor sets a usage threshold on the heap pools, which the JVM checks after each
+ * garbage collection. Every time a pool is still above it, one more level is shed:
+ * <ol>
+ * <li>idle engines, which are created again when needed;</li>
+ * <li>the least recently used half of the stored results and blocks;</li>
+ * <li>every stored result and block, the folder configurations and the import indexes, which are read again from
+ * disk.</li>
+ * </ol>
+ * Each level sheds what the levels before it do as well. Once the heap has kept below the threshold for a minute, the
+ * next notification starts over from the first level. What was freed is logged.
+ */
+class MemoryGovernor implements NotificationListener {
+
+    /** The share of a heap pool which may still be in use after garbage collection. */
+    private static final double THRESHOLD = 0.8;
+
+    /** How long without a notification before shedding starts over from the first level. */
+    private static final long CALM_MILLIS = 60 * 1000;
+
+    /** What an idle engine holds on to, as measured: mostly the compiled csslint.js in its scope. */
+    private static final long ENGINE_BYTES = 128 * 1024;
+
+    private static final int LEVELS = 3;
+
+    private final CssLintProvider provider;
+
+    /** The pools we set a threshold on, to be cleared again when we stop. */
+    private final List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+
+    /** Guarded by {@code this}. */
+    private int level;
+    private long lastShed;
+
+    MemoryGovernor(CssLintProvider provider) {
+        this.provider = provider;
+    }
+
+    /** Start listening for low memory. Pools whose threshold is already set by someone else are left alone. */
+    synchronized void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // Only the pools objects live on for long support both kinds of threshold.
+            if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()
+                    || !pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            long max = pool.getUsage().getMax();
+            if (max > 0 && pool.getCollectionUsageThreshold() == 0) {
+                pool.setCollectionUsageThreshold((long) (max * THRESHOLD));
+                pools.add(pool);
+            }
+        }
+        if (!pools.isEmpty()) {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+        }
+    }
+
+    synchronized void stop() {
+        if (pools.isEmpty()) {
+            return;
+        }
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            CssLintLog.error(e);
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            pool.setCollectionUsageThreshold(0);
+        }
+        pools.clear();
+    }
+
+    public void handleNotification(Notification notification, Object handback) {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            shed();
+        }
+    }
+
+    /** Shed the next level. */
+    synchronized void shed() {
+        long now = System.currentTimeMillis();
+        if (now - lastShed > CALM_MILLIS) {
+            level = 0;
+        }
+        lastShed = now;
+        level = Math.min(level + 1, LEVELS);
+
+        StringBuilder freed = new StringBuilder();
+        int engines = provider.dropIdle();
+        freed.append(engines).append(" idle engines (~").append(kb(engines * ENGINE_BYTES)).append(" KB)");
+        if (level >= 2) {
+            ResultStore results = provider.getResults();
+            BlockCache blocks = provider.getBlocks();
+            long before = results.estimateSize() + blocks.estimateSize();
+            int resultCount = results.size();
+            int blockCount = blocks.size();
+            if (level >= LEVELS) {
+                results.clear();
+                blocks.clear();
+            } else {
+                results.trim(resultCount / 2);
+                blocks.trim();
+            }
+            long after = results.estimateSize() + blocks.estimateSize();
+            freed.append(", ").append(resultCount - results.size()).append(" results and ")
+                    .append(blockCount - blocks.size()).append(" blocks (~").append(kb(before - after))
+                    .append(" KB)");
+        }
+        if (level >= LEVELS) {
+            freed.append(", ").append(provider.forgetFolderConfigs()).append(" folder configurations")
+                    .append(" and the import indexes, once saved");
+            ImportIndex.shed();
+        }
+        CssLintLog.info("CSSLint is low on memory; shed level %d of %d: %s", level, LEVELS, freed);
+    }
+
+    private static long kb(long bytes) {
+        return Math.max(0, bytes) / 1024;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.leechwin.csslint.eclipse.engine.Option;
+
+/**
+ * The {@code .csslintrc} files which configure the folder they are in, and the folders below it. Builds and the
+ * command line read them alike, so this has nothing to do with the workspace.
+ * <p>
+ * The files use the format of the csslint command line: whitespace separated {@code --errors=}, {@code --warnings=}
+ * and {@code --ignore=} lists of rule ids. Rules listed as errors or warnings are switched on, and ignored ones off.
+ * Options which take a number are set with their own name, such as {@code --selector-cost-budget=30}.
+ */
+public final class RcFile {
+
+    /** The name of the files. */
+    public static final String NAME = ".csslintrc";
+
+    private static final Map<String, Option> BY_NAME = new HashMap<String, Option>();
+
+    static {
+        for (Option o : Option.values()) {
+            BY_NAME.put(o.getLowerName(), o);
+        }
+    }
+
+    private RcFile() {
+    }
+
+    /** Parse the contents of a {@code .csslintrc}. Unknown rules and arguments are left out. */
+    public static Map<Option, String> parse(String text) {
+        Map<Option, String> options = new EnumMap<Option, String>(Option.class);
+        for (String arg : text.trim().split("\\s+")) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                continue;
+            }
+            String name = arg.substring(2, eq);
+            String value;
+            Option valued = BY_NAME.get(name);
+            if (valued != null && valued.getType() == Integer.class) {
+                // Such as --selector-cost-budget=30.
+                if (arg.substring(eq + 1).matches("\\d+")) {
+                    options.put(valued, arg.substring(eq + 1));
+                }
+                continue;
+            } else if (name.equals("errors") || name.equals("warnings")) {
+                value = "true";
+            } else if (name.equals("ignore")) {
+                value = "false";
+            } else {
+                continue;
+            }
+            for (String id : arg.substring(eq + 1).split(",")) {
+                Option o = BY_NAME.get(id.trim());
+                if (o != null && o.getType() == Boolean.class) {
+                    options.put(o, value);
+                }
+            }
+        }
+        return options;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.report.ReportWriter;
+
+/**
+ * Write the lint results of whole projects to a {@link ReportWriter}, one file at a time, so that memory use does not
+ * grow with the number of issues. The results come from the markers left by the {@link CssLintBuilder}, which are
+ * persistent; a project is only brought up to date by an incremental build first, which lints nothing unless files
+ * have changed since the last build.
+ */
+public class ReportExporter {
+
+    /**
+     * Write the results of every css file in {@code project}, then the project-wide rollups, which the builder puts on
+     * the project itself, as an entry named after the project. The caller is responsible for
+     * {@link ReportWriter#start()} and {@link ReportWriter#end()}, so that several projects can go in one report.
+     */
+    public void export(IProject project, final ReportWriter writer, final IProgressMonitor monitor)
+            throws CoreException, IOException {
+        project.build(IncrementalProjectBuilder.INCREMENTAL_BUILD, CssLintBuilder.BUILDER_ID, null, monitor);
+
+        final List<IFile> files = new ArrayList<IFile>();
+        project.accept(new IResourceProxyVisitor() {
+            public boolean visit(IResourceProxy proxy) {
+                if (proxy.getType() == IResource.FILE && CssContentTypes.isLintable(proxy.getName())) {
+                    files.add((IFile) proxy.requestResource());
+                }
+                return true;
+            }
+        }, IResource.NONE);
+
+        for (IFile file : files) {
+            if (monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            monitor.subTask("Exporting " + file.getName());
+            writer.file(file.getFullPath().makeRelative().toString(), issues(file));
+        }
+        List<Issue> rollups = issues(project);
+        if (!rollups.isEmpty()) {
+            // These have no line, so they are reported against the project as a whole.
+            writer.file(project.getFullPath().makeRelative().toString(), rollups);
+        }
+    }
+
+    /** Turn the markers of {@code resource}, and not those of its members, back into issues. */
+    private List<Issue> issues(IResource resource) throws CoreException {
+        IMarker[] markers = resource.findMarkers(CssLintBuilder.MARKER_TYPE, false, IResource.DEPTH_ZERO);
+        List<Issue> issues = new ArrayList<Issue>(markers.length);
+        for (IMarker m : markers) {
+            issues.add(new Issue(m.getAttribute(IMarker.LINE_NUMBER, 0), m.getAttribute(CssLintBuilder.COLUMN, 0),
+                    m.getAttribute(IMarker.MESSAGE, ""), m.getAttribute(CssLintBuilder.ISSUE_TYPE, "warning"),
+                    m.getAttribute(CssLintBuilder.RULE_ID, null), m.getAttribute(IMarker.CHAR_START, -1),
+                    m.getAttribute(IMarker.CHAR_END, -1)));
+        }
+        // Markers come back in no particular order.
+        Collections.sort(issues, new Comparator<Issue>() {
+            public int compare(Issue a, Issue b) {
+                if (a.getLine() != b.getLine()) {
+                    return a.getLine() < b.getLine() ? -1 : 1;
+                }
+                return a.getColumn() < b.getColumn() ? -1 : (a.getColumn() == b.getColumn() ? 0 : 1);
+            }
+        });
+        return issues;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.leechwin.csslint.eclipse.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * A file of the workspace, to be linted by a build.
+ */
+final class WorkspaceSource implements CssSource {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final IFile file;
+
+    WorkspaceSource(IFile file) {
+        this.file = file;
+    }
+
+    IFile getFile() {
+        return file;
+    }
+
+    public String getPath() {
+        return file.getFullPath().toString();
+    }
+
+    public boolean isEmbedded() {
+        return CssContentTypes.isEmbedded(file.getName());
+    }
+
+    /** Read the raw bytes of the file, straight from disk when it is stored locally. */
+    public byte[] readBytes() throws IOException, CoreException {
+        IPath location = file.getLocation();
+        if (location != null) {
+            File local = location.toFile();
+            if (local.isFile()) {
+                return Files.readAllBytes(local.toPath());
+            }
+        }
+
+        try (InputStream in = file.getContents()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    public String getCharset() throws CoreException {
+        return file.getCharset(false);
+    }
+
+    public String getFolderPath() {
+        return file.getParent().getFullPath().toString();
+    }
+
+    public String getFolderCharset() throws CoreException {
+        return file.getParent().getDefaultCharset();
+    }
+
+}
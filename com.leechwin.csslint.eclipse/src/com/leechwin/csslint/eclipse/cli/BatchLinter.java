@@ -0,0 +1,225 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.leechwin.csslint.eclipse.engine.CssLint;
+import com.leechwin.csslint.eclipse.engine.CssLintBuilder;
+import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.engine.Option;
+import com.leechwin.csslint.eclipse.engine.StyleExtractor;
+import com.leechwin.csslint.eclipse.report.ReportWriter;
+
+/**
+ * Lint many files at once, one engine per thread, and write the results out in the order the files were given. Each
+ * thread has an engine of its own, so the threads never wait for one another; only a bounded number of finished
+ * results are held back for the sake of ordering.
+ * <p>
+ * As in a build, each file is linted with the options of its directory, see {@link DirectoryOptions}, and markup has
+ * its styles extracted and linted.
+ */
+class BatchLinter {
+
+    /** The outcome of linting one file. */
+    static class Linted {
+        final Path file;
+        final List<Issue> issues;
+        final Exception error;
+
+        Linted(Path file, List<Issue> issues, Exception error) {
+            this.file = file;
+            this.issues = issues;
+            this.error = error;
+        }
+    }
+
+    /** What was found over all the files. */
+    static class Totals {
+        int files;
+        int errors;
+        int warnings;
+        int failures;
+
+        /**
+         * Count {@code linted}, and write it to {@code writer} if it was linted. Files which could not be read or
+         * linted are reported on standard error and counted as failures.
+         */
+        void report(Linted linted, String path, ReportWriter writer) throws IOException {
+            if (linted.error != null) {
+                failures++;
+                System.err.println(path + ": " + linted.error);
+                return;
+            }
+            files++;
+            for (Issue issue : linted.issues) {
+                if ("error".equals(issue.getType())) {
+                    errors++;
+                } else {
+                    warnings++;
+                }
+            }
+            writer.file(path, linted.issues);
+        }
+    }
+
+    /** The engine of a thread, and the options it was last set up with. */
+    private static class Engine {
+        final CssLint lint = new CssLintBuilder().fromDefault();
+        Map<Option, String> options;
+    }
+
+    private final Charset charset;
+    private final int threads;
+    private final Path root;
+    private final DirectoryOptions directories;
+
+    private final ThreadLocal<Engine> engines = new ThreadLocal<Engine>() {
+        @Override
+        protected Engine initialValue() {
+            return new Engine();
+        }
+    };
+
+    /**
+     * @param options the options to lint with, and their values, before any {@code .csslintrc} changes them.
+     * @param charset the encoding of files which do not start with a byte order mark.
+     * @param threads how many files to lint at once.
+     * @param root the directory which reported paths are relative to.
+     */
+    BatchLinter(Map<Option, String> options, Charset charset, int threads, Path root) {
+        this.charset = charset;
+        this.threads = Math.max(1, threads);
+        this.root = root;
+        this.directories = new DirectoryOptions(options, root);
+    }
+
+    /**
+     * Lint {@code files}, writing the results to {@code writer} as they become available.
+     */
+    Totals run(List<Path> files, ReportWriter writer) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CSSLint worker " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        Totals totals = new Totals();
+        Deque<Future<Linted>> window = new ArrayDeque<Future<Linted>>();
+        int next = 0;
+        try {
+            writer.start();
+            while (next < files.size() || !window.isEmpty()) {
+                while (next < files.size() && window.size() < threads * 4) {
+                    window.add(executor.submit(lintTask(files.get(next++))));
+                }
+                Linted linted = get(window.removeFirst());
+                totals.report(linted, displayPath(root, linted.file), writer);
+            }
+            writer.end();
+        } finally {
+            executor.shutdownNow();
+        }
+        return totals;
+    }
+
+    /** Create an engine with {@code options}. */
+    static CssLint newEngine(Map<Option, String> options) {
+        CssLint lint = new CssLintBuilder().fromDefault();
+        configure(lint, options);
+        return lint;
+    }
+
+    /** Set up {@code lint} to use {@code options}, and no others. */
+    static void configure(CssLint lint, Map<Option, String> options) {
+        lint.resetOptions();
+        for (Entry<Option, String> entry : options.entrySet()) {
+            lint.addOption(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private Callable<Linted> lintTask(final Path file) {
+        return new Callable<Linted>() {
+            public Linted call() {
+                try {
+                    Map<Option, String> config = directories.of(file);
+                    String css = readCss(file, charset);
+                    if (css == null) {
+                        // Markup without any styles.
+                        return new Linted(file, Collections.<Issue>emptyList(), null);
+                    }
+                    Engine engine = engines.get();
+                    if (!config.equals(engine.options)) {
+                        configure(engine.lint, config);
+                        engine.options = config;
+                    }
+                    CssLintResult result = engine.lint.lint(file.toString(), css);
+                    List<Issue> issues = new ArrayList<Issue>(result.getIssues());
+                    issues.addAll(result.getRollups());
+                    return new Linted(file, issues, null);
+                } catch (Exception e) {
+                    return new Linted(file, null, e);
+                }
+            }
+        };
+    }
+
+    private static Linted get(Future<Linted> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // The task catches everything but errors, which we let through.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** The path of {@code file} relative to the root when it is inside it, with {@code '/'} as separator. */
+    static String displayPath(Path root, Path file) {
+        Path base = root.toAbsolutePath().normalize();
+        Path absolute = file.toAbsolutePath().normalize();
+        Path shown = absolute.startsWith(base) ? base.relativize(absolute) : absolute;
+        return shown.toString().replace('\\', '/');
+    }
+
+    /**
+     * Read the css of a file: all of a stylesheet, or the styles of markup, positioned as they are in the file.
+     * @return the css, or null if the file is markup without any styles.
+     */
+    static String readCss(Path file, Charset charset) throws IOException {
+        String text = read(file, charset);
+        return FileFinder.isEmbedded(file) ? StyleExtractor.extract(text) : text;
+    }
+
+    /** Read a file, honouring a byte order mark if it has one. */
+    static String read(Path file, Charset charset) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return new String(bytes, 3, bytes.length - 3, Charset.forName("UTF-8"));
+        }
+        if (bytes.length >= 2 && ((bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF
+                || (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE)) {
+            return new String(bytes, Charset.forName("UTF-16"));
+        }
+        return new String(bytes, charset);
+    }
+
+}
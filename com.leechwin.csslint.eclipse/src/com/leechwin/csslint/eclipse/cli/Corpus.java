@@ -0,0 +1,162 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * A directory of generated stylesheets to benchmark against. The same parameters always give the same files, so a
+ * corpus is only written again when its parameters change.
+ * <p>
+ * File sizes follow a log-normal distribution around the median size, as real projects have many small stylesheets
+ * and a few large ones. Some files are minified onto a single line, and some declarations have one of the issues the
+ * default rules report. One file in twenty goes in a {@code vendor} folder, which the benchmark excludes the way
+ * projects usually exclude libraries.
+ */
+class Corpus {
+
+    static final String VENDOR = "vendor";
+
+    private static final String MANIFEST = "corpus.properties";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** How many files go in each folder. */
+    private static final int FOLDER_SIZE = 50;
+
+    /** No file is larger than this, however the distribution falls. */
+    private static final int MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final String[] CLEAN = { "color: #333", "padding: 4px 8px", "display: block",
+            "font-family: Arial, sans-serif", "line-height: 1.4", "border: 1px solid #ccc", "width: 50%",
+            "background-color: #fafafa", "text-align: left", "position: relative" };
+
+    /** Declarations the default rules complain about. */
+    private static final String[] FAULTY = { "margin: 0px", "float: left", "color: red !important", "colr: red",
+            "width: 100px; padding: 10px", "font-size: 12px", "background: url(a.png)" };
+
+    final int files;
+    final int medianSize;
+    final double spread;
+    final double minified;
+    final double issues;
+    final long seed;
+
+    /**
+     * @param files how many stylesheets to generate.
+     * @param medianSize the median size of a stylesheet, in bytes.
+     * @param spread the standard deviation of the logarithm of the sizes; 0 makes every file the same size.
+     * @param minified the share of stylesheets which are minified.
+     * @param issues the share of declarations which have an issue.
+     * @param seed where the random choices start from.
+     */
+    Corpus(int files, int medianSize, double spread, double minified, double issues, long seed) {
+        this.files = files;
+        this.medianSize = medianSize;
+        this.spread = spread;
+        this.minified = minified;
+        this.issues = issues;
+        this.seed = seed;
+    }
+
+    /** The parameters, as stored next to the files and in baselines. */
+    Properties describe() {
+        Properties props = new Properties();
+        props.setProperty("files", Integer.toString(files));
+        props.setProperty("medianSize", Integer.toString(medianSize));
+        props.setProperty("spread", Double.toString(spread));
+        props.setProperty("minified", Double.toString(minified));
+        props.setProperty("issues", Double.toString(issues));
+        props.setProperty("seed", Long.toString(seed));
+        return props;
+    }
+
+    /**
+     * Make sure {@code dir} holds this corpus, writing it out unless it already does.
+     * @return whether the files were written.
+     */
+    boolean writeTo(Path dir) throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        if (Files.isRegularFile(manifest) && describe().equals(load(manifest))) {
+            return false;
+        }
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                if (entries.iterator().hasNext()) {
+                    delete(dir);
+                }
+            }
+        }
+        Files.createDirectories(dir);
+        Random random = new Random(seed);
+        for (int i = 0; i < files; i++) {
+            String folder = random.nextInt(20) == 0 ? VENDOR : "folder" + (i / FOLDER_SIZE);
+            Path file = dir.resolve(folder).resolve("style" + i + ".css");
+            Files.createDirectories(file.getParent());
+            int size = (int) Math.min(MAX_SIZE, medianSize * Math.exp(spread * random.nextGaussian()));
+            Files.write(file, stylesheet(random, size, random.nextDouble() < minified).getBytes(UTF8));
+        }
+        try (OutputStream out = Files.newOutputStream(manifest)) {
+            describe().store(out, "CSSLint benchmark corpus");
+        }
+        return true;
+    }
+
+    /** Generate a stylesheet of about {@code size} bytes. */
+    private String stylesheet(Random random, int size, boolean minify) {
+        StringBuilder sb = new StringBuilder(size + 256);
+        int rule = 0;
+        while (sb.length() < size) {
+            sb.append(minify ? ".r" : "\n.r").append(rule++).append(minify ? "{" : " {\n");
+            int declarations = 1 + random.nextInt(6);
+            for (int d = 0; d < declarations; d++) {
+                String[] pool = random.nextDouble() < issues ? FAULTY : CLEAN;
+                sb.append(minify ? "" : "    ").append(pool[random.nextInt(pool.length)])
+                        .append(minify ? ";" : ";\n");
+            }
+            sb.append('}');
+        }
+        return sb.append(minify ? "" : "\n").toString();
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    /** Delete a corpus written before, and nothing else. */
+    private static void delete(Path dir) throws IOException {
+        if (!Files.isRegularFile(dir.resolve(MANIFEST))) {
+            throw new IOException("Not a benchmark corpus, so not overwriting: " + dir);
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.engine.Option;
+import com.leechwin.csslint.eclipse.report.ReportWriter;
+
+/**
+ * Lint files by sending them to a {@link LintDaemon}. All the requests are sent on one connection by a separate
+ * thread, without waiting for the responses, which are read as they come back. The styles of markup are extracted
+ * here, and markup without any is not sent at all. The options of each file are worked out here as well, as
+ * {@link BatchLinter} would, and sent with it, so that a file gets the same issues with or without a daemon.
+ */
+class DaemonClient {
+
+    /** Put in the queue after the last file. */
+    private static final BatchLinter.Linted END = new BatchLinter.Linted(null, null, null);
+
+    private final int port;
+    private final DirectoryOptions directories;
+    private final Charset charset;
+    private final Path root;
+
+    /**
+     * @param port the loopback port the daemon listens on.
+     * @param options the options to lint with, and their values, before any {@code .csslintrc} changes them.
+     * @param charset the encoding of files which do not start with a byte order mark.
+     * @param root the directory which reported paths are relative to.
+     */
+    DaemonClient(int port, Map<Option, String> options, Charset charset, Path root) {
+        this.port = port;
+        this.directories = new DirectoryOptions(options, root);
+        this.charset = charset;
+        this.root = root;
+    }
+
+    /**
+     * Lint {@code files} on the daemon, writing the results to {@code writer} in order.
+     */
+    BatchLinter.Totals run(final List<Path> files, ReportWriter writer) throws IOException, InterruptedException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            socket.setTcpNoDelay(true);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            // Files which were sent, or which could not be read, in order.
+            final BlockingQueue<BatchLinter.Linted> sent = new LinkedBlockingQueue<BatchLinter.Linted>();
+            Thread sender = new Thread("CSSLint sender") {
+                @Override
+                public void run() {
+                    try {
+                        for (Path file : files) {
+                            Map<Option, String> options;
+                            String css;
+                            try {
+                                options = directories.of(file);
+                                css = BatchLinter.readCss(file, charset);
+                            } catch (IOException e) {
+                                sent.add(new BatchLinter.Linted(file, null, e));
+                                continue;
+                            }
+                            if (css == null) {
+                                // Markup without any styles, which there is no need to send.
+                                sent.add(new BatchLinter.Linted(file, Collections.<Issue>emptyList(), null));
+                                continue;
+                            }
+                            Protocol.writeRequest(out, file.toString(), options, css);
+                            sent.add(new BatchLinter.Linted(file, null, null));
+                        }
+                        out.flush();
+                        socket.shutdownOutput();
+                    } catch (IOException e) {
+                        // The connection failed; the reader will find out.
+                    } finally {
+                        sent.add(END);
+                    }
+                }
+            };
+            sender.setDaemon(true);
+            sender.start();
+
+            BatchLinter.Totals totals = new BatchLinter.Totals();
+            writer.start();
+            BatchLinter.Linted next;
+            while ((next = sent.take()) != END) {
+                BatchLinter.Linted linted = next;
+                if (next.error == null && next.issues == null) {
+                    try {
+                        linted = new BatchLinter.Linted(next.file, Protocol.readResult(in), null);
+                    } catch (IOException e) {
+                        linted = new BatchLinter.Linted(next.file, null, e);
+                    }
+                }
+                totals.report(linted, BatchLinter.displayPath(root, linted.file), writer);
+            }
+            writer.end();
+            return totals;
+        } finally {
+            socket.close();
+        }
+    }
+
+}
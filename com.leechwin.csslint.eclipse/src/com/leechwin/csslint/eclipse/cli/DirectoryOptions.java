@@ -0,0 +1,69 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.leechwin.csslint.eclipse.builder.RcFile;
+import com.leechwin.csslint.eclipse.engine.Option;
+
+/**
+ * Work out the options of the files in each directory, as a build does for folders: the options given on the command
+ * line, changed by the {@link RcFile .csslintrc} of each directory from the root down to the directory. Directories
+ * outside of the root are configured by every directory above them. Each directory is worked out once and
+ * remembered, and directories with the same options share them.
+ */
+class DirectoryOptions {
+
+    private final Map<Option, String> base;
+    private final Path top;
+
+    /** The options of each directory, by its absolute path. */
+    private final ConcurrentMap<Path, Map<Option, String>> resolved =
+            new ConcurrentHashMap<Path, Map<Option, String>>();
+
+    /**
+     * @param base the options of directories without any {@code .csslintrc} above them.
+     * @param root the directory the search for {@code .csslintrc} files stops at.
+     */
+    DirectoryOptions(Map<Option, String> base, Path root) {
+        this.base = base;
+        this.top = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Return the options of {@code file}.
+     * @throws IOException if a {@code .csslintrc} cannot be read.
+     */
+    Map<Option, String> of(Path file) throws IOException {
+        return get(file.toAbsolutePath().normalize().getParent());
+    }
+
+    /** Return the options of the files in {@code dir}, an absolute path. */
+    private Map<Option, String> get(Path dir) throws IOException {
+        Map<Option, String> options = resolved.get(dir);
+        if (options != null) {
+            return options;
+        }
+        Path parent = dir.getParent();
+        options = parent == null || dir.equals(top) ? base : get(parent);
+        Path rc = dir.resolve(RcFile.NAME);
+        if (Files.isRegularFile(rc)) {
+            Map<Option, String> overrides = RcFile.parse(new String(Files.readAllBytes(rc), Charset.forName("UTF-8")));
+            if (!overrides.isEmpty()) {
+                Map<Option, String> merged = new EnumMap<Option, String>(Option.class);
+                merged.putAll(options);
+                merged.putAll(overrides);
+                options = merged;
+            }
+        }
+        Map<Option, String> existing = resolved.putIfAbsent(dir, options);
+        return existing == null ? options : existing;
+    }
+
+}
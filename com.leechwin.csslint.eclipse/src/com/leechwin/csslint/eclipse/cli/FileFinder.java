@@ -0,0 +1,104 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Turn the files, directories and globs given on the command line into the files to lint. Directories are searched
+ * recursively for stylesheets, ending in {@code .css}, and for markup with styles in it, such as {@code .html} and
+ * {@code .vue} files, the same files a build lints by default. Globs use the syntax of
+ * {@link java.nio.file.FileSystem#getPathMatcher(String)}, and are matched against every file under the longest
+ * leading part of the glob which has no wildcards.
+ */
+class FileFinder {
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    // NB! Must match the embeddedCss content type of plugin.xml.
+    private static final List<String> EMBEDDED = Arrays.asList("html", "htm", "xhtml", "jsp", "jspf", "vue", "svelte");
+
+    /** Matches the files to lint in a directory. */
+    private static final String LINTABLE = "glob:**.{css," + String.join(",", EMBEDDED) + "}";
+
+    /** Is {@code file} markup with styles in it, which must be extracted before linting? */
+    static boolean isEmbedded(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && EMBEDDED.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Find the files named by {@code args}.
+     * @return the files, sorted and without duplicates.
+     * @throws IOException if an argument names nothing, or a directory cannot be read.
+     */
+    List<Path> find(Collection<String> args) throws IOException {
+        Set<Path> files = new TreeSet<Path>();
+        for (String arg : args) {
+            if (isGlob(arg)) {
+                addGlob(arg, files);
+                continue;
+            }
+            Path path = Paths.get(arg).normalize();
+            if (Files.isDirectory(path)) {
+                addMatching(path, FileSystems.getDefault().getPathMatcher(LINTABLE), files);
+            } else if (Files.isRegularFile(path)) {
+                files.add(path);
+            } else {
+                throw new IOException("No such file or directory: " + arg);
+            }
+        }
+        return new ArrayList<Path>(files);
+    }
+
+    private static boolean isGlob(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            if (GLOB_CHARS.indexOf(arg.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addGlob(String glob, Set<Path> files) throws IOException {
+        String normalized = glob.replace('\\', '/');
+        int wildcard = 0;
+        while (GLOB_CHARS.indexOf(normalized.charAt(wildcard)) < 0) {
+            wildcard++;
+        }
+        int slash = normalized.lastIndexOf('/', wildcard);
+        Path base = Paths.get(slash < 0 ? "." : slash == 0 ? "/" : normalized.substring(0, slash));
+        String pattern = slash < 0 ? "./" + normalized : normalized;
+        if (Files.isDirectory(base)) {
+            addMatching(base, FileSystems.getDefault().getPathMatcher("glob:" + pattern), files);
+        }
+    }
+
+    /** Add every file under {@code dir} which matches. */
+    private void addMatching(Path dir, final PathMatcher matcher, final Set<Path> files) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matcher.matches(file)) {
+                    files.add(file.normalize());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,261 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.leechwin.csslint.eclipse.engine.CssLint;
+import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.engine.Option;
+
+/**
+ * A long-lived process which keeps warm engines, and lints files sent to it over a loopback socket, so that short
+ * runs such as pre-commit hooks do not pay for starting up csslint.js every time. See {@link Protocol} for the wire
+ * format. Each connection has a reader, which hands requests to the engine threads as they arrive, and a writer,
+ * which sends the responses back in order as they finish. Should the writer fail, because the client went away, it
+ * closes the connection and cancels what is still queued, so that the reader does not wait on it forever. The daemon
+ * stops once it has had no connection for the idle timeout.
+ * <p>
+ * Every request says which options to lint with, as the client works them out from its command line and the
+ * {@code .csslintrc} files of the file. An engine is only set up again when it was last used with other options.
+ */
+class LintDaemon {
+
+    /** How many requests of one connection may be in progress at once, before we stop reading more. */
+    private static final int PIPELINE_DEPTH = 64;
+
+    /** How long to wait for room in a connection's queue before checking whether its writer has given up. */
+    private static final int OFFER_TIMEOUT_MILLIS = 100;
+
+    /** How often to check whether the daemon has been idle long enough. */
+    private static final int ACCEPT_TIMEOUT_MILLIS = 1000;
+
+    /** Put in a connection's queue after its last request. */
+    private static final Future<List<Issue>> END = new FutureTask<List<Issue>>(new Callable<List<Issue>>() {
+        public List<Issue> call() {
+            return null;
+        }
+    });
+
+    /** An engine, and the options it was last set up with, as sent in requests. */
+    private static class Engine {
+        final CssLint lint;
+        String key;
+
+        Engine(CssLint lint, String key) {
+            this.lint = lint;
+            this.key = key;
+        }
+    }
+
+    private final BlockingQueue<Engine> engines = new LinkedBlockingQueue<Engine>();
+    private final ExecutorService workers;
+    private final ExecutorService connections = Executors.newCachedThreadPool(threads("CSSLint connection"));
+    private final long idleMillis;
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Start creating the engines, in the background.
+     * @param options the options the engines are set up with to begin with.
+     * @param threads how many engines to keep, and so how many files to lint at once.
+     * @param idleMillis how long to wait for a connection before stopping.
+     */
+    LintDaemon(final Map<Option, String> options, int threads, long idleMillis) {
+        this.idleMillis = idleMillis;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), threads("CSSLint worker"));
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            workers.execute(new Runnable() {
+                public void run() {
+                    CssLint lint = BatchLinter.newEngine(options);
+                    // Run something through the engine, so that the first real request is not the slowest.
+                    lint.lint("warmup.css", "a { color: red; }");
+                    engines.add(new Engine(lint, Protocol.key(options)));
+                }
+            });
+        }
+    }
+
+    /**
+     * Accept connections on {@code server} until the daemon has been idle for the timeout, then close it.
+     */
+    void serve(ServerSocket server) throws IOException {
+        server.setSoTimeout((int) Math.max(1, Math.min(idleMillis, ACCEPT_TIMEOUT_MILLIS)));
+        try {
+            while (true) {
+                try {
+                    final Socket socket = server.accept();
+                    active.incrementAndGet();
+                    connections.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                handle(socket);
+                            } finally {
+                                lastActivity = System.currentTimeMillis();
+                                active.decrementAndGet();
+                            }
+                        }
+                    });
+                } catch (SocketTimeoutException e) {
+                    if (active.get() == 0 && System.currentTimeMillis() - lastActivity >= idleMillis) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            server.close();
+            connections.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    /** Read requests from {@code socket} and lint them, while the responses are written on another thread. */
+    private void handle(final Socket socket) {
+        final BlockingQueue<Future<List<Issue>>> pending = new LinkedBlockingQueue<Future<List<Issue>>>(
+                PIPELINE_DEPTH);
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final Future<?> writer = connections.submit(new Callable<Void>() {
+                public Void call() throws IOException, InterruptedException {
+                    boolean done = false;
+                    try {
+                        respond(pending, out);
+                        done = true;
+                        return null;
+                    } finally {
+                        if (!done) {
+                            // Wakes the reader up if it is waiting for the next request.
+                            close(socket);
+                        }
+                        cancel(pending);
+                    }
+                }
+            });
+            try {
+                String[] request;
+                while ((request = Protocol.readRequest(in)) != null) {
+                    if (!enqueue(pending, workers.submit(lintTask(request[0], request[1], request[2])), writer)) {
+                        break;
+                    }
+                }
+            } finally {
+                enqueue(pending, END, writer);
+            }
+            writer.get();
+        } catch (IOException e) {
+            // The client went away; nothing to answer.
+        } catch (ExecutionException e) {
+            // The writer failed, which means the client went away.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Queue a response for the writer, waiting for room as long as the writer is still working.
+     * @return whether it was queued; if not, it has been cancelled.
+     */
+    private static boolean enqueue(BlockingQueue<Future<List<Issue>>> pending, Future<List<Issue>> response,
+            Future<?> writer) throws InterruptedException {
+        while (!pending.offer(response, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                response.cancel(true);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Cancel the responses nobody will write. */
+    private static void cancel(BlockingQueue<Future<List<Issue>>> pending) {
+        Future<List<Issue>> response;
+        while ((response = pending.poll()) != null) {
+            if (response != END) {
+                response.cancel(true);
+            }
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+        }
+    }
+
+    /** Write the responses in order, flushing whenever no other response is ready. */
+    private void respond(BlockingQueue<Future<List<Issue>>> pending, DataOutputStream out) throws IOException,
+            InterruptedException {
+        Future<List<Issue>> next;
+        while ((next = pending.take()) != END) {
+            try {
+                Protocol.writeResult(out, next.get());
+            } catch (ExecutionException e) {
+                Protocol.writeError(out, String.valueOf(e.getCause()));
+            }
+            if (pending.isEmpty()) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    private Callable<List<Issue>> lintTask(final String path, final String options, final String css) {
+        return new Callable<List<Issue>>() {
+            public List<Issue> call() throws InterruptedException {
+                Engine engine = engines.take();
+                try {
+                    if (!options.equals(engine.key)) {
+                        // Forget the options first, so that the engine is not left half set up should they be bad.
+                        engine.key = null;
+                        BatchLinter.configure(engine.lint, Protocol.options(options));
+                        engine.key = options;
+                    }
+                    CssLintResult result = engine.lint.lint(path, css);
+                    List<Issue> issues = new ArrayList<Issue>(result.getIssues());
+                    issues.addAll(result.getRollups());
+                    return issues;
+                } finally {
+                    engines.add(engine);
+                }
+            }
+        };
+    }
+
+    private static ThreadFactory threads(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
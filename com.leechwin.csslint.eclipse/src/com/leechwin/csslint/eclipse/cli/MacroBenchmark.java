@@ -0,0 +1,447 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.leechwin.csslint.eclipse.builder.CssFileReader;
+import com.leechwin.csslint.eclipse.builder.CssSource;
+import com.leechwin.csslint.eclipse.builder.Excluder;
+import com.leechwin.csslint.eclipse.builder.LintPipeline;
+import com.leechwin.csslint.eclipse.builder.MarkerSink;
+import com.leechwin.csslint.eclipse.engine.BlockCache;
+import com.leechwin.csslint.eclipse.engine.CssLint;
+import com.leechwin.csslint.eclipse.engine.EnginePool;
+import com.leechwin.csslint.eclipse.engine.Option;
+import com.leechwin.csslint.eclipse.engine.ResultStore;
+
+/**
+ * Benchmark a whole build, rather than single lints, over a generated {@link Corpus}. Each run goes through the
+ * stages the builder does for a full build, using the builder's own {@link Excluder}, {@link CssFileReader},
+ * {@link LintPipeline} and {@link MarkerSink}: walking the folders, leaving out excluded files, reading and decoding
+ * each file, linting it on a pooled engine, or in blocks on several when it is large, and replacing its markers. Only
+ * the workspace is stood in for: files are read from disk, engines are set up from the defaults, and markers are kept
+ * in memory, with the same attributes the builder sets. So no workspace is needed:
+ *
+ * <pre>
+ * java -cp com.leechwin.csslint.eclipse.jar:lib/js.jar com.leechwin.csslint.eclipse.cli.MacroBenchmark [options]
+ * </pre>
+ *
+ * The first run warms the engines up and is not counted. The median of the other runs is reported in files per second,
+ * with the 99th percentile of the time from submitting each file to the pipeline to having written its markers. Given a
+ * baseline, the exit code is 1 when either is worse than the baseline by more than the tolerance, 0 otherwise, and 2
+ * when the arguments are wrong or a file could not be linted.
+ */
+public class MacroBenchmark {
+
+    private static final String USAGE = "Usage: MacroBenchmark [options]%n"
+            + "  --corpus=<dir>          where to generate the stylesheets (default: csslint-corpus in the temp dir)%n"
+            + "  --files=<n>             how many stylesheets (default 500)%n"
+            + "  --size=<bytes>          their median size (default 8192)%n"
+            + "  --spread=<sigma>        how far sizes spread, as the deviation of their logarithm (default 1.0)%n"
+            + "  --minified=<share>      the share of minified stylesheets (default 0.1)%n"
+            + "  --issues=<share>        the share of declarations with an issue (default 0.05)%n"
+            + "  --seed=<n>              the seed of the corpus (default 1)%n"
+            + "  --threads=<n>           engines to lint with (default: one per core)%n"
+            + "  --runs=<n>              runs to take the median of, after a warm-up run (default 3)%n"
+            + "  --baseline=<file>       compare with a stored baseline%n"
+            + "  --save-baseline=<file>  store this run as a baseline%n"
+            + "  --tolerance=<percent>   how much worse than the baseline is still fine (default 10)%n";
+
+    /** Excluded like the libraries of a project, through the exclusion preference. */
+    private static final String EXCLUDED = "/" + Corpus.VENDOR + "/";
+
+    private static final String FILES_PER_SECOND = "filesPerSecond";
+    private static final String P99_MILLIS = "p99Millis";
+
+    /** The outcome of one run. */
+    static class Run {
+        final int files;
+        final int excluded;
+        final long bytes;
+        final int issues;
+        final double filesPerSecond;
+        final double p50Millis;
+        final double p99Millis;
+
+        Run(int files, int excluded, long bytes, int issues, long nanos, long[] latencies) {
+            this.files = files;
+            this.excluded = excluded;
+            this.bytes = bytes;
+            this.issues = issues;
+            this.filesPerSecond = files * 1e9 / Math.max(1, nanos);
+            Arrays.sort(latencies);
+            this.p50Millis = percentile(latencies, 0.5) / 1e6;
+            this.p99Millis = percentile(latencies, 0.99) / 1e6;
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files (%d excluded), %d KB, %d issues: %.1f files/s, p50 %.2f ms, p99 %.2f ms",
+                    files, excluded, bytes / 1024, issues, filesPerSecond, p50Millis, p99Millis);
+        }
+    }
+
+    /** A file of the corpus, read from disk as the builder reads workspace files stored locally. */
+    static class CorpusFile implements CssSource {
+        private final Path file;
+        /** Like a workspace path, with the corpus for a project. */
+        private final String path;
+        /** When it was handed to the pipeline. Only used by the build thread. */
+        long submitted;
+        /** How many bytes were read, once they have been. */
+        volatile int length;
+
+        CorpusFile(Path corpus, Path file) {
+            this.file = file;
+            this.path = "/" + corpus.getFileName() + "/" + corpus.relativize(file).toString().replace('\\', '/');
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isEmbedded() {
+            // The corpus has stylesheets only.
+            return false;
+        }
+
+        public byte[] readBytes() throws IOException {
+            byte[] bytes = Files.readAllBytes(file);
+            length = bytes.length;
+            return bytes;
+        }
+
+        public String getCharset() {
+            return null;
+        }
+
+        public String getFolderPath() {
+            return path.substring(0, path.lastIndexOf('/'));
+        }
+
+        public String getFolderCharset() {
+            return "UTF-8";
+        }
+    }
+
+    /**
+     * Stands in for the markers of the workspace: each file has a list of markers, which are maps of the attributes
+     * the builder sets.
+     */
+    static class MarkerStore extends MarkerSink<CorpusFile> {
+        private final Map<String, List<Map<String, Object>>> markers = new HashMap<String, List<Map<String, Object>>>();
+
+        @Override
+        public void delete(CorpusFile file) {
+            markers.remove(file.getPath());
+        }
+
+        @Override
+        protected void create(CorpusFile file, Map<String, Object> attributes) {
+            List<Map<String, Object>> list = markers.get(file.getPath());
+            if (list == null) {
+                list = new ArrayList<Map<String, Object>>();
+                markers.put(file.getPath(), list);
+            }
+            list.add(attributes);
+        }
+    }
+
+    private final Map<Option, String> options = new EnumMap<Option, String>(Option.class);
+    private Path corpusDir = Paths.get(System.getProperty("java.io.tmpdir"), "csslint-corpus");
+    private int files = 500;
+    private int size = 8192;
+    private double spread = 1.0;
+    private double minified = 0.1;
+    private double issues = 0.05;
+    private long seed = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int runs = 3;
+    private Path baseline;
+    private Path saveBaseline;
+    private double tolerance = 10;
+
+    public static void main(String[] args) {
+        System.exit(new MacroBenchmark().run(args));
+    }
+
+    /**
+     * Benchmark according to {@code args}.
+     * @return the exit code.
+     */
+    int run(String[] args) {
+        for (Option o : Option.defaults()) {
+            options.put(o, "true");
+        }
+        try {
+            parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.printf(USAGE);
+            return Main.EXIT_FAILURE;
+        }
+
+        Corpus corpus = new Corpus(files, size, spread, minified, issues, seed);
+        Excluder excluder = new Excluder();
+        excluder.setExcludes(EXCLUDED);
+        try {
+            if (corpus.writeTo(corpusDir)) {
+                System.out.println("Wrote the corpus to " + corpusDir);
+            }
+            BlockingQueue<CssLint> engines = new LinkedBlockingQueue<CssLint>();
+            for (int i = 0; i < threads; i++) {
+                engines.add(BatchLinter.newEngine(options));
+            }
+            EnginePool pool = pool(engines);
+
+            List<Run> measured = new ArrayList<Run>();
+            for (int i = 0; i <= runs; i++) {
+                Run run = build(pool, excluder);
+                System.out.println((i == 0 ? "warm-up: " : "run " + i + ": ") + run);
+                if (i > 0) {
+                    measured.add(run);
+                }
+            }
+            Run median = median(measured);
+            System.out.println("median: " + median);
+
+            if (saveBaseline != null) {
+                save(corpus, median, saveBaseline);
+            }
+            return baseline == null ? Main.EXIT_OK : compare(corpus, median, baseline);
+        } catch (IOException | ExecutionException e) {
+            System.err.println(e.getMessage());
+            return Main.EXIT_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Main.EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Build the corpus once from scratch, as a full build does: nothing is reused from earlier runs but the engines.
+     * Files are fed to the pipeline and their markers replaced in the same loop as the builder's.
+     */
+    private Run build(EnginePool pool, Excluder excluder) throws IOException, InterruptedException,
+            ExecutionException {
+        long start = System.nanoTime();
+        List<Path> found = new FileFinder().find(Collections.singletonList(corpusDir.toString()));
+        LintPipeline<CorpusFile> pipeline = new LintPipeline<CorpusFile>(engines(pool, new ResultStore(files),
+                new BlockCache(1024)), new CssFileReader(), LintPipeline.defaultDepth());
+        MarkerStore markers = new MarkerStore();
+
+        long[] latencies = new long[found.size()];
+        int linted = 0;
+        int excluded = 0;
+        long bytes = 0;
+        int issueCount = 0;
+        Iterator<Path> next = found.iterator();
+        while (true) {
+            while (pipeline.hasCapacity() && next.hasNext()) {
+                CorpusFile file = new CorpusFile(corpusDir, next.next());
+                markers.delete(file);
+                if (excluder.isExcluded(file.getPath())) {
+                    excluded++;
+                    continue;
+                }
+                file.submitted = System.nanoTime();
+                pipeline.submit(file);
+            }
+            if (pipeline.isEmpty()) {
+                break;
+            }
+            LintPipeline.Outcome<CorpusFile> outcome = pipeline.take();
+            if (outcome.error != null) {
+                throw new ExecutionException("Failed to lint " + outcome.source.getPath(), outcome.error);
+            }
+            markers.add(outcome.source, outcome.result);
+            latencies[linted++] = System.nanoTime() - outcome.source.submitted;
+            bytes += outcome.source.length;
+            issueCount += outcome.result.getIssues().size() + outcome.result.getRollups().size();
+        }
+        return new Run(linted, excluded, bytes, issueCount, System.nanoTime() - start,
+                Arrays.copyOf(latencies, linted));
+    }
+
+    /** Engines and caches of our own, standing in for those the workspace shares. */
+    private static LintPipeline.Engines<CorpusFile> engines(final EnginePool pool, final ResultStore results,
+            final BlockCache blocks) {
+        return new LintPipeline.Engines<CorpusFile>() {
+            public EnginePool poolFor(CorpusFile source) {
+                return pool;
+            }
+
+            public String getFingerprint(CorpusFile source) {
+                return "benchmark";
+            }
+
+            public ResultStore getResults() {
+                return results;
+            }
+
+            public BlockCache getBlocks() {
+                return blocks;
+            }
+        };
+    }
+
+    private static EnginePool pool(final BlockingQueue<CssLint> engines) {
+        return new EnginePool() {
+            public CssLint acquire() {
+                try {
+                    return engines.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a CSSLint engine", e);
+                }
+            }
+
+            public void release(CssLint lint) {
+                engines.add(lint);
+            }
+        };
+    }
+
+    /** The run with the median throughput. */
+    private static Run median(List<Run> measured) {
+        List<Run> sorted = new ArrayList<Run>(measured);
+        Collections.sort(sorted, new Comparator<Run>() {
+            public int compare(Run a, Run b) {
+                return Double.compare(a.filesPerSecond, b.filesPerSecond);
+            }
+        });
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static void save(Corpus corpus, Run run, Path file) throws IOException {
+        Properties props = corpus.describe();
+        props.setProperty(FILES_PER_SECOND, Double.toString(run.filesPerSecond));
+        props.setProperty(P99_MILLIS, Double.toString(run.p99Millis));
+        try (OutputStream out = Files.newOutputStream(file)) {
+            props.store(out, "CSSLint benchmark baseline");
+        }
+        System.out.println("Saved the baseline to " + file);
+    }
+
+    /** Compare {@code run} with the baseline in {@code file}, which must be of the same corpus. */
+    private int compare(Corpus corpus, Run run, Path file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        for (String key : corpus.describe().stringPropertyNames()) {
+            if (!corpus.describe().getProperty(key).equals(props.getProperty(key))) {
+                System.err.println("The baseline is of another corpus: " + key + " is " + props.getProperty(key));
+                return Main.EXIT_FAILURE;
+            }
+        }
+        double filesPerSecond;
+        double p99Millis;
+        try {
+            filesPerSecond = Double.parseDouble(props.getProperty(FILES_PER_SECOND));
+            p99Millis = Double.parseDouble(props.getProperty(P99_MILLIS));
+        } catch (NullPointerException | NumberFormatException e) {
+            System.err.println("Not a baseline: " + file);
+            return Main.EXIT_FAILURE;
+        }
+
+        double slower = 100 * (1 - run.filesPerSecond / filesPerSecond);
+        double laggier = 100 * (run.p99Millis / p99Millis - 1);
+        System.out.printf("baseline: %.1f files/s, p99 %.2f ms; throughput %+.1f%%, p99 %+.1f%%%n", filesPerSecond,
+                p99Millis, -slower, laggier);
+        if (slower > tolerance || laggier > tolerance) {
+            System.err.printf("Regressed by more than %.1f%% from the baseline%n", tolerance);
+            return Main.EXIT_THRESHOLD;
+        }
+        return Main.EXIT_OK;
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+            String name = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            if (name.equals("--corpus")) {
+                corpusDir = Paths.get(value);
+            } else if (name.equals("--files")) {
+                files = (int) number(name, value, 1);
+            } else if (name.equals("--size")) {
+                size = (int) number(name, value, 1);
+            } else if (name.equals("--spread")) {
+                spread = number(name, value, 0);
+            } else if (name.equals("--minified")) {
+                minified = share(name, value);
+            } else if (name.equals("--issues")) {
+                issues = share(name, value);
+            } else if (name.equals("--seed")) {
+                try {
+                    seed = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a number for " + name + ": " + value);
+                }
+            } else if (name.equals("--threads")) {
+                threads = (int) number(name, value, 1);
+            } else if (name.equals("--runs")) {
+                runs = (int) number(name, value, 1);
+            } else if (name.equals("--baseline")) {
+                baseline = Paths.get(value);
+            } else if (name.equals("--save-baseline")) {
+                saveBaseline = Paths.get(value);
+            } else if (name.equals("--tolerance")) {
+                tolerance = number(name, value, 0);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+    }
+
+    private static double number(String name, String value, double min) {
+        double n;
+        try {
+            n = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for " + name + ": " + value);
+        }
+        if (n < min) {
+            throw new IllegalArgumentException("Too small for " + name + ": " + value);
+        }
+        return n;
+    }
+
+    private static double share(String name, String value) {
+        double n = number(name, value, 0);
+        if (n > 1) {
+            throw new IllegalArgumentException("Not between 0 and 1 for " + name + ": " + value);
+        }
+        return n;
+    }
+
+}
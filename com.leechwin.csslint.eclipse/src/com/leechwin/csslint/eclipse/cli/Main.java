@@ -0,0 +1,271 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.leechwin.csslint.eclipse.engine.Option;
+import com.leechwin.csslint.eclipse.report.CheckstyleWriter;
+import com.leechwin.csslint.eclipse.report.JsonLinesWriter;
+import com.leechwin.csslint.eclipse.report.ReportWriter;
+import com.leechwin.csslint.eclipse.report.SarifWriter;
+
+/**
+ * Lint css files from the command line, without Eclipse, giving the same results as the builder. Run with the
+ * plugin and {@code lib/js.jar} on the classpath:
+ *
+ * <pre>
+ * java -cp com.leechwin.csslint.eclipse.jar:lib/js.jar com.leechwin.csslint.eclipse.cli.Main [options] paths...
+ * </pre>
+ *
+ * With {@code --serve}, it instead runs a {@link LintDaemon} which keeps its engines warm between runs, and which
+ * runs given {@code --connect} hand their files to.
+ * <p>
+ * The exit code is 0 when the issues are within the thresholds, 1 when they are not, and 2 when the arguments are
+ * wrong or a file could not be linted.
+ */
+public class Main {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_THRESHOLD = 1;
+    static final int EXIT_FAILURE = 2;
+
+    private static final String USAGE = "Usage: csslint [options] <file|directory|glob>...%n"
+            + "  --format=checkstyle|jsonl|sarif  report format (default checkstyle)%n"
+            + "  --output=<file>                  write the report to a file rather than standard output%n"
+            + "  --config=<file>                  read options from a properties file of rule=value lines%n"
+            + "  --enable=<rule>[,<rule>...]      switch rules on%n"
+            + "  --disable=<rule>[,<rule>...]     switch rules off%n"
+            + "  --all                            switch every rule on%n"
+            + "  --threads=<n>                    files to lint at once (default: one per core)%n"
+            + "  --charset=<name>                 encoding of the files (default UTF-8)%n"
+            + "  --max-errors=<n>                 most errors allowed before failing (default 0)%n"
+            + "  --max-warnings=<n>               most warnings allowed before failing (default unlimited)%n"
+            + "  --connect=<port>                 lint on a daemon, which has its engines warmed up already%n"
+            + "Usage: csslint --serve [options]%n"
+            + "  --port=<port>                    loopback port to listen on (default: any free port)%n"
+            + "  --idle-timeout=<seconds>         stop after this long without a connection (default 300)%n"
+            + "Rule options are applied in order, starting from the defaults: %s%n"
+            + "Then the .csslintrc files from the current directory down to each file's own are applied to it.%n"
+            + "Directories are searched for .css files, and for markup with styles: .html, .vue, .jsp and so on.%n";
+
+    /** The options which take a value. */
+    private static final List<String> VALUED = Arrays.asList("--format", "--output", "--config", "--enable",
+            "--disable", "--threads", "--charset", "--max-errors", "--max-warnings", "--connect", "--port",
+            "--idle-timeout");
+
+    private final Map<Option, String> options = new EnumMap<Option, String>(Option.class);
+    private final List<String> paths = new ArrayList<String>();
+    private String format = "checkstyle";
+    private String output;
+    private Charset charset = Charset.forName("UTF-8");
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxErrors = 0;
+    private int maxWarnings = -1;
+    private boolean serve;
+    private int port;
+    private int connect = -1;
+    private int idleSeconds = 300;
+
+    public static void main(String[] args) {
+        System.exit(new Main().run(args));
+    }
+
+    /**
+     * Lint according to {@code args}.
+     * @return the exit code.
+     */
+    int run(String[] args) {
+        for (Option o : Option.defaults()) {
+            options.put(o, "true");
+        }
+        try {
+            parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            StringBuilder defaults = new StringBuilder();
+            for (Option o : Option.defaults()) {
+                defaults.append(defaults.length() == 0 ? "" : ", ").append(o.getLowerName());
+            }
+            System.err.printf(USAGE, defaults);
+            return EXIT_FAILURE;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return EXIT_FAILURE;
+        }
+
+        if (serve) {
+            return serve();
+        }
+
+        try {
+            List<Path> files = new FileFinder().find(paths);
+            BatchLinter.Totals totals;
+            ReportWriter writer = writer();
+            try {
+                if (connect >= 0) {
+                    totals = new DaemonClient(connect, options, charset, Paths.get("")).run(files, writer);
+                } else {
+                    totals = new BatchLinter(options, charset, threads, Paths.get("")).run(files, writer);
+                }
+            } finally {
+                writer.close();
+            }
+            if (totals.failures > 0) {
+                return EXIT_FAILURE;
+            }
+            boolean tooMany = totals.errors > maxErrors || (maxWarnings >= 0 && totals.warnings > maxWarnings);
+            return tooMany ? EXIT_THRESHOLD : EXIT_OK;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return EXIT_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FAILURE;
+        }
+    }
+
+    /** Run a daemon until it has been idle for the timeout. */
+    private int serve() {
+        try {
+            ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            LintDaemon daemon = new LintDaemon(options, threads, TimeUnit.SECONDS.toMillis(idleSeconds));
+            // Clients and scripts read the port from this line.
+            System.out.println("CSSLint daemon listening on port " + server.getLocalPort());
+            System.out.flush();
+            daemon.serve(server);
+            return EXIT_OK;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private void parse(String[] args) throws IOException {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                paths.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? null : arg.substring(eq + 1);
+            if (name.equals("--all")) {
+                for (Option o : Option.values()) {
+                    if (o.getType() == Boolean.class) {
+                        options.put(o, "true");
+                    }
+                }
+            } else if (name.equals("--serve")) {
+                serve = true;
+            } else if (!VALUED.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            } else if (value == null) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            } else if (name.equals("--format")) {
+                if (!value.equals("checkstyle") && !value.equals("jsonl") && !value.equals("sarif")) {
+                    throw new IllegalArgumentException("Unknown format: " + value);
+                }
+                format = value;
+            } else if (name.equals("--output")) {
+                output = value;
+            } else if (name.equals("--config")) {
+                readConfig(value);
+            } else if (name.equals("--enable")) {
+                for (String rule : value.split(",")) {
+                    options.put(option(rule), "true");
+                }
+            } else if (name.equals("--disable")) {
+                for (String rule : value.split(",")) {
+                    options.remove(option(rule));
+                }
+            } else if (name.equals("--threads")) {
+                threads = number(name, value);
+            } else if (name.equals("--charset")) {
+                if (!Charset.isSupported(value)) {
+                    throw new IllegalArgumentException("Unsupported charset: " + value);
+                }
+                charset = Charset.forName(value);
+            } else if (name.equals("--max-errors")) {
+                maxErrors = number(name, value);
+            } else if (name.equals("--max-warnings")) {
+                maxWarnings = number(name, value);
+            } else if (name.equals("--connect")) {
+                connect = number(name, value);
+            } else if (name.equals("--port")) {
+                port = number(name, value);
+            } else {
+                idleSeconds = number(name, value);
+            }
+        }
+        if (paths.isEmpty() && !serve) {
+            throw new IllegalArgumentException("No files to lint");
+        }
+    }
+
+    /** Read {@code rule=value} lines, where a value of false switches the rule off. */
+    private void readConfig(String file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        for (String key : props.stringPropertyNames()) {
+            String value = props.getProperty(key).trim();
+            if (value.equalsIgnoreCase("false")) {
+                options.remove(option(key));
+            } else {
+                options.put(option(key), value);
+            }
+        }
+    }
+
+    private static Option option(String rule) {
+        String name = rule.trim();
+        for (Option o : Option.values()) {
+            if (o.getLowerName().equals(name)) {
+                return o;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rule: " + name);
+    }
+
+    private static int number(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for " + name + ": " + value);
+        }
+    }
+
+    private ReportWriter writer() throws IOException {
+        OutputStream stream = output == null ? System.out : Files.newOutputStream(Paths.get(output));
+        Writer out = new BufferedWriter(new OutputStreamWriter(stream, Charset.forName("UTF-8")));
+        if (format.equals("checkstyle")) {
+            return new CheckstyleWriter(out);
+        } else if (format.equals("jsonl")) {
+            return new JsonLinesWriter(out);
+        }
+        return new SarifWriter(out);
+    }
+
+}
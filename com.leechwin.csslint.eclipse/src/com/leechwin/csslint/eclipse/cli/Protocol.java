@@ -0,0 +1,182 @@
+package com.leechwin.csslint.eclipse.cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.engine.Option;
+
+/**
+ * The wire format between a {@link LintDaemon} and its clients. Every message is a frame: a four byte big-endian
+ * length, then that many bytes.
+ * <ul>
+ * <li>A request frame holds the path of a file, a newline, the options to lint it with, another newline, and the css
+ * to lint, all in UTF-8. The options are written as {@code name=value;} for each, in the order of {@link Option},
+ * as in the keys of the builder's configurations.</li>
+ * <li>A response frame holds a four byte issue count, then for each issue its line, column, first character and end
+ * character as four byte numbers, and its type, message and rule id as modified UTF-8 strings, as written by
+ * {@link DataOutputStream#writeUTF(String)}. Characters not known are -1, and a rule id not known is empty. A count of
+ * -1 means the file could not be linted, and is followed by the reason, as a string.</li>
+ * </ul>
+ * A client may send any number of requests on a connection without waiting; responses come back in the same order.
+ * When it has no more to send, it shuts down its side of the connection, and the daemon closes the connection after
+ * the last response.
+ */
+class Protocol {
+
+    /** Frames larger than this are refused, so that a bad client cannot make the daemon run out of memory. */
+    static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Protocol() {
+    }
+
+    static void writeRequest(DataOutputStream out, String path, Map<Option, String> options, String css)
+            throws IOException {
+        byte[] payload = (path + "\n" + key(options) + "\n" + css).getBytes(UTF8);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Read the next request.
+     * @return the path, the options and the css, or null if the client has finished sending.
+     */
+    static String[] readRequest(DataInputStream in) throws IOException {
+        byte[] payload = readFrame(in);
+        if (payload == null) {
+            return null;
+        }
+        String text = new String(payload, UTF8);
+        int newline = text.indexOf('\n');
+        int second = newline < 0 ? -1 : text.indexOf('\n', newline + 1);
+        if (second < 0) {
+            throw new IOException("Malformed request");
+        }
+        return new String[] { text.substring(0, newline), text.substring(newline + 1, second),
+                text.substring(second + 1) };
+    }
+
+    /** Write {@code options} as they are sent in a request. */
+    static String key(Map<Option, String> options) {
+        StringBuilder sb = new StringBuilder();
+        for (Option o : Option.values()) {
+            if (options.containsKey(o)) {
+                sb.append(o.getLowerName()).append('=').append(options.get(o)).append(';');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read the options of a request.
+     * @throws IllegalArgumentException if they are malformed, or name a rule not known.
+     */
+    static Map<Option, String> options(String key) {
+        Map<Option, String> options = new EnumMap<Option, String>(Option.class);
+        for (String pair : key.split(";")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            Option option = eq < 0 ? null : option(pair.substring(0, eq));
+            if (option == null) {
+                throw new IllegalArgumentException("Unknown option: " + pair);
+            }
+            options.put(option, pair.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Option option(String name) {
+        for (Option o : Option.values()) {
+            if (o.getLowerName().equals(name)) {
+                return o;
+            }
+        }
+        return null;
+    }
+
+    static void writeResult(DataOutputStream out, List<Issue> issues) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + issues.size() * 64);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(issues.size());
+        for (Issue issue : issues) {
+            data.writeInt(issue.getLine());
+            data.writeInt(issue.getColumn());
+            data.writeInt(issue.getCharStart());
+            data.writeInt(issue.getCharEnd());
+            data.writeUTF(issue.getType());
+            data.writeUTF(issue.getMessage());
+            data.writeUTF(issue.getRule() == null ? "" : issue.getRule());
+        }
+        writeFrame(out, bytes.toByteArray());
+    }
+
+    static void writeError(DataOutputStream out, String message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(-1);
+        data.writeUTF(message == null ? "" : message);
+        writeFrame(out, bytes.toByteArray());
+    }
+
+    /**
+     * Read the response to a request.
+     * @throws IOException if the daemon could not lint the file, with the daemon's reason as message.
+     */
+    static List<Issue> readResult(DataInputStream in) throws IOException {
+        byte[] payload = readFrame(in);
+        if (payload == null) {
+            throw new EOFException("The daemon closed the connection");
+        }
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException(data.readUTF());
+        }
+        List<Issue> issues = new ArrayList<Issue>(count);
+        for (int i = 0; i < count; i++) {
+            int line = data.readInt();
+            int column = data.readInt();
+            int charStart = data.readInt();
+            int charEnd = data.readInt();
+            String type = data.readUTF();
+            String message = data.readUTF();
+            String rule = data.readUTF();
+            issues.add(new Issue(line, column, message, type, rule.isEmpty() ? null : rule, charStart, charEnd));
+        }
+        return issues;
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /** Read a frame, or return null at a clean end of stream. */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            return null;
+        }
+        int length = (b << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Frame too large: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+}
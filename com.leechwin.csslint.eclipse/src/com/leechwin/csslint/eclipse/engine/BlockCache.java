@@ -0,0 +1,133 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lint results of the blocks of large stylesheets, keyed by the content of each block and a fingerprint of the options
+ * it was linted with. When a large stylesheet is edited, {@link ChunkedLinter} only lints the blocks whose content
+ * changed, and takes the others from here. The least recently used blocks are dropped once the cache is full.
+ * <p>
+ * The cache also remembers how the last few stylesheets were split, so that the next version of each can be split
+ * the same way around an edit.
+ */
+public class BlockCache {
+
+    /** How a stylesheet was last split into blocks. */
+    static class Layout {
+        final String css;
+        /** Where each block but the last ended, in ascending order. */
+        final int[] ends;
+
+        Layout(String css, int[] ends) {
+            this.css = css;
+            this.ends = ends;
+        }
+    }
+
+    /** How many stylesheets to remember the layout of. Each layout holds on to a whole stylesheet. */
+    private static final int LAYOUTS = 16;
+
+    private final Map<String, CssLintResult> blocks;
+
+    private final Map<String, Layout> layouts = lru(LAYOUTS);
+
+    /**
+     * @param capacity the most blocks to keep.
+     */
+    public BlockCache(int capacity) {
+        blocks = lru(capacity);
+    }
+
+    private static <V> Map<String, V> lru(final int capacity) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > Math.max(1, capacity);
+            }
+        };
+    }
+
+    /** Return the key under which a block with {@code text} is stored. */
+    static String key(String fingerprint, String text) {
+        return fingerprint + '/' + text.length() + '/' + ResultStore.digest(text);
+    }
+
+    /** Return the result stored under {@code key}, or null. */
+    synchronized CssLintResult get(String key) {
+        return blocks.get(key);
+    }
+
+    synchronized void put(String key, CssLintResult result) {
+        blocks.put(key, result);
+    }
+
+    /** Return how the stylesheet {@code systemId} was last split, or null. */
+    synchronized Layout getLayout(String systemId) {
+        return layouts.get(systemId);
+    }
+
+    synchronized void putLayout(String systemId, Layout layout) {
+        layouts.put(systemId, layout);
+    }
+
+    /** Forget how the stylesheet {@code systemId}, or every stylesheet under it if it is a folder, was split. */
+    public synchronized void forget(String systemId) {
+        String prefix = systemId.endsWith("/") ? systemId : systemId + '/';
+        for (Iterator<String> i = layouts.keySet().iterator(); i.hasNext();) {
+            String key = i.next();
+            if (key.equals(systemId) || key.startsWith(prefix)) {
+                i.remove();
+            }
+        }
+    }
+
+    /** Keep how the stylesheet {@code from} was split for the same stylesheet, now called {@code to}. */
+    public synchronized void move(String from, String to) {
+        Layout layout = layouts.remove(from);
+        if (layout != null) {
+            layouts.put(to, layout);
+        }
+    }
+
+    /** Forget the least recently used blocks and layouts, keeping at most half of each. */
+    public synchronized void trim() {
+        trim(blocks, blocks.size() / 2);
+        trim(layouts, layouts.size() / 2);
+    }
+
+    private static void trim(Map<String, ?> lru, int keep) {
+        for (Iterator<String> i = lru.keySet().iterator(); lru.size() > keep && i.hasNext();) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    /** Return roughly how many bytes of heap the blocks and layouts hold on to. */
+    public synchronized long estimateSize() {
+        long size = 0;
+        for (Map.Entry<String, CssLintResult> entry : blocks.entrySet()) {
+            size += 48 + entry.getKey().length() + entry.getValue().estimateSize();
+        }
+        for (Layout layout : layouts.values()) {
+            // Mostly latin-1, which takes a byte per character.
+            size += 64 + layout.css.length() + 4L * layout.ends.length;
+        }
+        return size;
+    }
+
+    /** Forget every block and layout. */
+    public synchronized void clear() {
+        blocks.clear();
+        layouts.clear();
+    }
+
+    /** How many blocks are stored. */
+    public synchronized int size() {
+        return blocks.size();
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.leechwin.csslint.eclipse.engine;
+
+/**
+ * Lets one lint be abandoned from another thread. Engines check it before they start and every so often while
+ * csslint.js runs, and give up with a {@link LintCancelledException}. A cancellation is for a single lint: the engine
+ * goes back to its pool unharmed, and other lints on it are not affected.
+ */
+public final class Cancellation {
+
+    private volatile boolean cancelled;
+
+    /** Ask the lint to stop as soon as it can. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** Has {@link #cancel()} been called? */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Give up now if the lint was cancelled.
+     * @throws LintCancelledException if it was.
+     */
+    public void check() {
+        if (cancelled) {
+            throw new LintCancelledException();
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lint large stylesheets by splitting them into chunks at top-level rule boundaries, and linting the chunks at the
+ * same time on separate engines. Issue positions are mapped back onto the whole stylesheet, and the stylesheet-wide
+ * rules are evaluated on the merged {@link RollupSummary} of all the chunks, so that the result is the same as
+ * linting the stylesheet in one go.
+ * <p>
+ * When given a {@link BlockCache}, stylesheets are split into smaller blocks whose boundaries depend on their content,
+ * and only the blocks not linted before with the same options are linted again. The results of the others are shifted
+ * to where the blocks are now, so an edit to a large stylesheet costs about as much as the blocks it touched.
+ * <p>
+ * Stylesheets which configure csslint through comments are always linted in one go, as those comments affect text
+ * outside of their own chunk.
+ */
+public class ChunkedLinter {
+
+    /** Stylesheets smaller than this are not worth splitting. */
+    public static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+    /** Chunks smaller than this cost more in overhead than they gain. */
+    private static final int MIN_CHUNK_SIZE = 32 * 1024;
+
+    /** The average size of cached blocks: small enough that an edit re-lints little, large enough to be worth a call. */
+    private static final int BLOCK_SIZE = 8 * 1024;
+
+    private final EnginePool pool;
+    private final Executor executor;
+    private final int threshold;
+    private final int parallelism;
+    private final CssChunker chunker = new CssChunker();
+    private final BlockCache cache;
+
+    /**
+     * @param pool where the engines for the chunks come from.
+     * @param executor runs the chunks other than those linted by the calling thread.
+     * @param threshold the size from which stylesheets are split.
+     * @param parallelism how many chunks may be linted at once, including by the calling thread.
+     */
+    public ChunkedLinter(EnginePool pool, Executor executor, int threshold, int parallelism) {
+        this(pool, executor, threshold, parallelism, null);
+    }
+
+    /**
+     * @param cache where the results of blocks are kept between lints, or null to lint every chunk every time.
+     */
+    public ChunkedLinter(EnginePool pool, Executor executor, int threshold, int parallelism, BlockCache cache) {
+        this.pool = pool;
+        this.executor = executor;
+        this.threshold = threshold;
+        this.parallelism = Math.max(1, parallelism);
+        this.cache = cache;
+    }
+
+    /**
+     * Should {@code css} be linted in chunks?
+     */
+    public boolean accepts(String css) {
+        return (parallelism > 1 || cache != null) && css.length() >= threshold
+                && !CssLint.hasInlineConfig(css);
+    }
+
+    /**
+     * Check for problems in css source, one chunk per engine. Must not be called while holding an engine from the
+     * pool, or the pool may run dry.
+     * @param systemId a filename
+     * @param css a String of css source code.
+     * @return a {@link CssLintResult}.
+     */
+    public CssLintResult lint(String systemId, String css) {
+        return lint(systemId, css, null);
+    }
+
+    /**
+     * Check for problems in css source, reusing the results of blocks already linted with the same options.
+     * @param fingerprint identifies the options of the engines in the pool, or null if blocks must not be reused.
+     * @see #lint(String, String)
+     */
+    public CssLintResult lint(String systemId, String css, String fingerprint) {
+        return lint(systemId, css, fingerprint, null);
+    }
+
+    /**
+     * Check for problems in css source, giving up if {@code cancellation} is cancelled meanwhile. Chunks not yet
+     * started are skipped, and those being linted stop part way.
+     * @param cancellation checked before and while linting each chunk, or null if the lint cannot be cancelled.
+     * @throws LintCancelledException if it was cancelled.
+     * @see #lint(String, String, String)
+     */
+    public CssLintResult lint(String systemId, String css, String fingerprint, final Cancellation cancellation) {
+        long start = System.nanoTime();
+        final LineIndex index = LineIndex.of(css);
+        final boolean minified = index.isMinified();
+        boolean cached = cache != null && fingerprint != null;
+        int size = Math.max(MIN_CHUNK_SIZE, css.length() / parallelism + 1);
+        final List<CssChunker.Chunk> chunks;
+        if (cached) {
+            BlockCache.Layout layout = cache.getLayout(systemId);
+            chunks = layout == null ? chunker.split(css, BLOCK_SIZE) : chunker.blocks(css, BLOCK_SIZE, layout.css,
+                    layout.ends);
+            cache.putLayout(systemId, new BlockCache.Layout(css, ends(chunks)));
+        } else {
+            chunks = chunker.split(css, size);
+        }
+        final CssLintResult[] results = new CssLintResult[chunks.size()];
+        final Set<Option> enabled = EnumSet.noneOf(Option.class);
+        final AtomicInteger budget = new AtomicInteger(-1);
+
+        // Only lint the chunks we have no result for.
+        String[] keys = new String[chunks.size()];
+        final List<Integer> todo = new ArrayList<Integer>();
+        for (int i = 0; i < results.length; i++) {
+            if (cached) {
+                keys[i] = BlockCache.key(minified ? fingerprint + "/minified" : fingerprint, chunks.get(i).text);
+                results[i] = cache.get(keys[i]);
+            }
+            if (results[i] == null) {
+                todo.add(Integer.valueOf(i));
+            }
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch finished = new CountDownLatch(todo.size());
+
+        Runnable worker = new Runnable() {
+            public void run() {
+                int n;
+                while ((n = next.getAndIncrement()) < todo.size()) {
+                    int i = todo.get(n).intValue();
+                    try {
+                        if (cancellation != null) {
+                            cancellation.check();
+                        }
+                        CssLint lint = pool.acquire();
+                        try {
+                            if (n == 0) {
+                                recordEnabled(lint, enabled, budget);
+                            }
+                            results[i] = lint.lintPart(chunks.get(i).text, minified, cancellation);
+                        } finally {
+                            pool.release(lint);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }
+        };
+        if (todo.isEmpty()) {
+            // Nothing changed, but the stylesheet-wide rules still need to know which options are on.
+            CssLint lint = pool.acquire();
+            try {
+                recordEnabled(lint, enabled, budget);
+            } finally {
+                pool.release(lint);
+            }
+        }
+        for (int helper = 1; helper < Math.min(parallelism, todo.size()); helper++) {
+            executor.execute(worker);
+        }
+        worker.run();
+
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while linting " + systemId, e);
+        }
+        if (failure.get() instanceof LintCancelledException) {
+            throw (LintCancelledException) failure.get();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Failed to lint " + systemId, failure.get());
+        }
+        if (cached) {
+            for (Integer i : todo) {
+                cache.put(keys[i.intValue()], results[i.intValue()]);
+            }
+        }
+        CssLintResult result = merge(chunks, results, todo, enabled, System.nanoTime() - start);
+        if (minified) {
+            result = result.withIssues(index.locate(result.getIssues(), css), result.getRollups());
+        }
+        if (budget.get() >= 0) {
+            result = CssLint.withPayload(result, Payload.of(css), budget.get());
+        }
+        LintMetrics.getDefault().recordLint(css.length(), result.getIssues().size() + result.getRollups().size(),
+                System.nanoTime() - start);
+        return result;
+    }
+
+    /** Return where each chunk but the last ends. */
+    private static int[] ends(List<CssChunker.Chunk> chunks) {
+        int[] ends = new int[chunks.size() - 1];
+        int end = 0;
+        for (int i = 0; i < ends.length; i++) {
+            end += chunks.get(i).text.length();
+            ends[i] = end;
+        }
+        return ends;
+    }
+
+    private static void recordEnabled(CssLint lint, Set<Option> enabled, AtomicInteger budget) {
+        budget.set(lint.payloadBudget());
+        synchronized (enabled) {
+            for (Option o : Option.values()) {
+                if (lint.isEnabled(o)) {
+                    enabled.add(o);
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the results of each chunk back together.
+     * @param linted the chunks which were linted now, rather than found in the cache.
+     * @param nanos how long the lint took, for its timings.
+     */
+    private CssLintResult merge(List<CssChunker.Chunk> chunks, CssLintResult[] results, List<Integer> linted,
+            Set<Option> enabled, long nanos) {
+        List<Issue> issues = new ArrayList<Issue>();
+        List<Issue> rollups = new ArrayList<Issue>();
+        RollupSummary summary = new RollupSummary();
+        List<String> imports = new ArrayList<String>();
+        Map<String, Integer> stats = new TreeMap<String, Integer>();
+        for (int i = 0; i < results.length; i++) {
+            CssChunker.Chunk chunk = chunks.get(i);
+            imports.addAll(results[i].getImports());
+            for (Map.Entry<String, Integer> stat : results[i].getStats().entrySet()) {
+                // Every stat counts something, so the counts of the chunks add up to that of the stylesheet.
+                Integer sum = stats.get(stat.getKey());
+                stats.put(stat.getKey(), sum == null ? stat.getValue() : Integer.valueOf(sum + stat.getValue()));
+            }
+            for (Issue issue : results[i].getIssues()) {
+                issues.add(shift(issue, chunk.line, chunk.column));
+            }
+            summary.append(results[i].getSummary(), chunk.line, chunk.column);
+        }
+        synchronized (enabled) {
+            summary.report(enabled, issues, rollups);
+        }
+        // One lint, however many chunks it took, which ran side by side; cached chunks took no time now.
+        List<RuleTimings> parts = new ArrayList<RuleTimings>();
+        for (Integer i : linted) {
+            if (results[i.intValue()].getTimings() != null) {
+                parts.add(results[i.intValue()].getTimings());
+            }
+        }
+        RuleTimings timings = parts.isEmpty() ? null : RuleTimings.ofParts(parts, nanos);
+        return new CssLintResult(issues, rollups, summary, timings, imports, stats);
+    }
+
+    /** Move an issue found in a chunk to its position in the whole stylesheet. */
+    private static Issue shift(Issue issue, int firstLine, int firstColumn) {
+        int line = issue.getLine();
+        int column = line == 1 ? issue.getColumn() + firstColumn : issue.getColumn();
+        return new Issue(line + firstLine - 1, column, issue.getMessage(), issue.getType(), issue.getRule());
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Split a stylesheet into parts at top-level rule boundaries, so that the parts can be linted separately. Braces
+ * inside comments and strings are ignored.
+ */
+class CssChunker {
+
+    /** A part of a stylesheet, and where it starts. */
+    static class Chunk {
+        final String text;
+        /** The line on which the chunk starts, from 1. */
+        final int line;
+        /** The number of characters before the chunk on its first line. */
+        final int column;
+
+        Chunk(String text, int line, int column) {
+            this.text = text;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    /** Decides where chunks end. */
+    private interface Cutter {
+        /** Should the chunk starting at {@code start} end at {@code end}, which is just after a top-level rule? */
+        boolean cut(String css, int start, int end);
+    }
+
+    /**
+     * Split {@code css} into chunks of at least {@code size} characters, apart from the last one.
+     */
+    List<Chunk> split(String css, final int size) {
+        return split(css, new Cutter() {
+            public boolean cut(String css, int start, int end) {
+                return end - start >= size;
+            }
+        });
+    }
+
+    /**
+     * Split {@code css} into blocks of at least {@code size} characters, for caching, keeping the blocks of an earlier
+     * version of the stylesheet wherever the text is unchanged. Before and after the edited text, blocks end where they
+     * ended before, so they keep their content and their cached results stay valid; only the edited text is split
+     * afresh. Should the edit leave the rest of the stylesheet inside a rule or comment, the old boundaries are simply
+     * never reached.
+     * @param previous the earlier version, or null.
+     * @param previousEnds where the blocks of the earlier version ended, in ascending order.
+     */
+    List<Chunk> blocks(String css, final int size, String previous, final int[] previousEnds) {
+        if (previous == null) {
+            return split(css, size);
+        }
+        int max = Math.min(css.length(), previous.length());
+        int prefix = 0;
+        while (prefix < max && css.charAt(prefix) == previous.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && css.charAt(css.length() - 1 - suffix) == previous.charAt(previous.length() - 1 - suffix)) {
+            suffix++;
+        }
+        final int editStart = prefix;
+        final int editEnd = css.length() - suffix;
+        final int shift = previous.length() - css.length();
+        return split(css, new Cutter() {
+            public boolean cut(String css, int start, int end) {
+                if (end <= editStart) {
+                    return Arrays.binarySearch(previousEnds, end) >= 0;
+                } else if (end >= editEnd) {
+                    return Arrays.binarySearch(previousEnds, end + shift) >= 0;
+                } else {
+                    return end - start >= size;
+                }
+            }
+        });
+    }
+
+    private List<Chunk> split(String css, Cutter cutter) {
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        int length = css.length();
+        int start = 0;
+        int startLine = 1;
+        int startColumn = 0;
+        int line = 1;
+        int lineStart = 0;
+        int depth = 0;
+
+        int i = 0;
+        while (i < length) {
+            char c = css.charAt(i);
+            if (c == '/' && i + 1 < length && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                for (int j = i; j < end; j++) {
+                    if (css.charAt(j) == '\n') {
+                        line++;
+                        lineStart = j + 1;
+                    }
+                }
+                i = end;
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                // Strings end at the matching quote, or at an unescaped newline.
+                i++;
+                while (i < length && css.charAt(i) != c && css.charAt(i) != '\n') {
+                    if (css.charAt(i) == '\\' && i + 1 < length) {
+                        if (css.charAt(i + 1) == '\n') {
+                            line++;
+                            lineStart = i + 2;
+                        }
+                        i++;
+                    }
+                    i++;
+                }
+                if (i < length && css.charAt(i) == c) {
+                    i++;
+                }
+                continue;
+            }
+
+            i++;
+            if (c == '\n') {
+                line++;
+                lineStart = i;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+            }
+
+            boolean boundary = depth == 0 && (c == '}' || c == ';');
+            if (boundary && i < length && cutter.cut(css, start, i)) {
+                chunks.add(new Chunk(css.substring(start, i), startLine, startColumn));
+                start = i;
+                startLine = line;
+                startColumn = i - lineStart;
+            }
+        }
+        if (start < length || chunks.isEmpty()) {
+            chunks.add(new Chunk(css.substring(start), startLine, startColumn));
+        }
+        return chunks;
+    }
+
+}
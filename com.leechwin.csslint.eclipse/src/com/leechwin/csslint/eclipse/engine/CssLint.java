@@ -3,9 +3,16 @@ package com.leechwin.csslint.eclipse.engine;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextAction;
@@ -14,6 +21,7 @@ import org.mozilla.javascript.Function;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 
 /**
  * A utility class to check css source code for potential problems.
@@ -21,23 +29,68 @@ import org.mozilla.javascript.Scriptable;
  */
 public class CssLint {
 
+    /** The rule in csslint-eclipse.js which records a {@link RollupSummary}. */
+    private static final String SUMMARY_RULE = "rollup-summary";
+
+    /** The option and stat used by the rule timing wrapper in csslint-eclipse.js. */
+    private static final String TIMING_OPTION = "rule-timing";
+
+    /** The rule in csslint-eclipse.js which records the URIs of {@code @import} rules. */
+    private static final String IMPORTS_RULE = "import-edges";
+
+    /** The option and stat used by the profile wrapper in csslint-eclipse.js. */
+    private static final String PROFILES_OPTION = "profiles";
+
+    /** The option which has the rollup summary record declaration blocks, when duplicate-blocks itself is off. */
+    private static final String BLOCKS_OPTION = "rollup-blocks";
+
+    /**
+     * The start of an embedded ruleset or an allow comment, as csslint.js looks for them. Its own patterns are case
+     * sensitive for rulesets but not for allow comments; ignoring case for both errs on the side of finding one.
+     */
+    private static final Pattern INLINE_CONFIG = Pattern.compile("/\\*\\s*csslint", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Options left out for minified stylesheets: they are about how the source is written, which is the minifier's
+     * business rather than the author's.
+     */
+    static final Set<Option> MINIFIED_SKIPPED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(Option.ZERO_UNITS,
+            Option.SHORTHAND));
+
+    /**
+     * Thrown out of csslint.js when a lint is cancelled. An error rather than an exception, so that no catch or finally
+     * in the script gets control back.
+     */
+    static class Abandoned extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
     private final Map<Option, Object> options = new EnumMap<Option, Object>(Option.class);
 
     private final ContextFactory contextFactory;
 
     private final NativeObject lintFunc;
 
+    private volatile boolean timed;
+
+    private volatile boolean summarized;
+
+    /** How long the current user of this engine waited for it in a pool. Guarded by {@code this}. */
+    private long acquireWaitNanos;
+
     /**
-     * singleton instance
+     * singleton instance, created on first use rather than whenever this class is loaded
      */
-    protected final static CssLint instance = new CssLintBuilder().fromDefault();
+    private static class Holder {
+        static final CssLint instance = new CssLintBuilder().fromDefault();
+    }
 
     /**
      * access method for singleton object
      * @return singleton instance
      */
     public static CssLint getInstance() {
-        return instance;
+        return Holder.instance;
     }
 
     /**
@@ -67,38 +120,288 @@ public class CssLint {
         options.put(o, optionParser.parse(o.getType(), arg));
     }
 
+    /**
+     * Record how long each rule takes, in {@link CssLintResult#getTimings()}. This slows linting down, so it is meant
+     * for finding out which rules are worth switching off.
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Record a {@link RollupSummary} with every result, so that it can be added to a {@link ProjectRollup}.
+     */
+    public void setSummarized(boolean summarized) {
+        this.summarized = summarized;
+    }
+
+    /**
+     * Tell this engine how long its caller waited to get it out of a pool. Reported with the next lint, to Flight
+     * Recorder, and then forgotten.
+     */
+    public synchronized void recordAcquireWait(long nanos) {
+        acquireWaitNanos = nanos;
+    }
+
+    /**
+     * @param cancellation checked while csslint.js runs, or null if the lint cannot be cancelled.
+     * @throws LintCancelledException if it was cancelled.
+     */
+    @NeedsContext
+    private CssLintResult doLint(final String css, final Map<String, Object> extraOptions,
+            final Cancellation cancellation) {
+        if (cancellation != null) {
+            cancellation.check();
+        }
+        try {
+            return (CssLintResult) contextFactory.call(new ContextAction() {
+                public CssLintResult run(Context cx) {
+                    String src = css == null ? "" : css;
+                    Scriptable opts = optionsAsCssObject(options);
+                    addOptions(opts, extraOptions);
+                    boolean timing = timed;
+                    Object[] args = new Object[] { src, opts };
+                    long start = timing ? System.nanoTime() : 0;
+                    NativeObject result;
+                    if (cancellation != null) {
+                        cx.putThreadLocal(Cancellation.class, cancellation);
+                    }
+                    try {
+                        result = (NativeObject) ScriptableObject.callMethod(cx, lintFunc, "verify", args);
+                    } finally {
+                        cx.removeThreadLocal(Cancellation.class);
+                    }
+                    long nanos = timing ? System.nanoTime() - start : 0;
+                    return toResult((NativeArray) result.get("messages"), (Scriptable) result.get("stats"), timing,
+                            nanos);
+                }
+            });
+        } catch (Abandoned e) {
+            throw new LintCancelledException();
+        }
+    }
+
+    /**
+     * Lint once for each set of options in {@code profiles}, parsing only once: every rule is set up once per profile
+     * that enables it, and each profile has its own reporter.
+     */
     @NeedsContext
-    private CssLintResult doLint(final String css) {
-        return (CssLintResult) contextFactory.call(new ContextAction() {
-            @SuppressWarnings("static-access")
-            public CssLintResult run(Context cx) {
+    private List<CssLintResult> doLintProfiles(final String css, final List<Map<Option, Object>> profiles,
+            final Map<String, Object> extraOptions) {
+        @SuppressWarnings("unchecked")
+        List<CssLintResult> results = (List<CssLintResult>) contextFactory.call(new ContextAction() {
+            public List<CssLintResult> run(Context cx) {
                 String src = css == null ? "" : css;
-                Object[] args = new Object[] { src, optionsAsCssObject() };
-                NativeObject result = (NativeObject) lintFunc.callMethod(cx, lintFunc, "verify", args);
-                NativeArray nativeList = (NativeArray) result.get("messages");
-
-                ArrayList<Issue> issueList = new ArrayList<Issue>();
-                for (int i = 0; i < nativeList.getLength(); i++) {
-                    Object obj = nativeList.get(i);
-                    if (obj instanceof NativeObject) {
-                        NativeObject nativeObj = (NativeObject) obj;
-                        Object line = nativeObj.get("line");
-                        Object col = nativeObj.get("col");
-                        Object message = nativeObj.get("message");
-                        Object type = nativeObj.get("type");
-                        if (line != null && col != null && message != null) {
-                            Issue issue = new Issue(((Double) line).intValue(),
-                                    ((Double) col).intValue(),
-                                    (String) message.toString(),
-                                    (String) type);
-                            issueList.add(issue);
+                // The rules of every profile are set up, and the wrapper sorts out which of them each profile gets.
+                Map<Option, Object> union = new EnumMap<Option, Object>(Option.class);
+                Object[] rulesets = new Object[profiles.size()];
+                for (int k = 0; k < rulesets.length; k++) {
+                    for (Entry<Option, Object> entry : profiles.get(k).entrySet()) {
+                        // A rule enabled by any profile stays enabled.
+                        if (!Boolean.TRUE.equals(union.get(entry.getKey()))) {
+                            union.put(entry.getKey(), entry.getValue());
                         }
                     }
+                    Scriptable ruleset = optionsAsCssObject(profiles.get(k));
+                    addOptions(ruleset, extraOptions);
+                    rulesets[k] = ruleset;
                 }
+                Scriptable opts = optionsAsCssObject(union);
+                addOptions(opts, extraOptions);
+                opts.put(PROFILES_OPTION, opts, cx.newArray(lintFunc, rulesets));
+                boolean timing = timed;
+                Object[] args = new Object[] { src, opts };
+                long start = timing ? System.nanoTime() : 0;
+                NativeObject result = (NativeObject) ScriptableObject.callMethod(cx, lintFunc, "verify", args);
+                long nanos = timing ? System.nanoTime() - start : 0;
 
-                return new CssLintResult(issueList);
+                // Anything reported outside of the rules, such as a fatal parse error, concerns every profile.
+                CssLintResult shared = toResult((NativeArray) result.get("messages"), null, false, 0);
+                Scriptable stats = (Scriptable) result.get("stats");
+                Object reporters = stats == null ? null : stats.get(PROFILES_OPTION, stats);
+                List<CssLintResult> list = new ArrayList<CssLintResult>();
+                for (int k = 0; k < rulesets.length; k++) {
+                    Scriptable reporter = reporters instanceof Scriptable ? (Scriptable) ((Scriptable) reporters)
+                            .get(k, (Scriptable) reporters) : null;
+                    CssLintResult own = reporter == null ? toResult(null, null, timing, nanos) : toResult(
+                            (NativeArray) reporter.get("messages", reporter), (Scriptable) reporter.get("stats",
+                                    reporter), timing, nanos);
+                    List<Issue> issues = new ArrayList<Issue>(own.getIssues());
+                    issues.addAll(shared.getIssues());
+                    RollupSummary.sortByLine(issues);
+                    List<Issue> rollups = new ArrayList<Issue>(own.getRollups());
+                    rollups.addAll(shared.getRollups());
+                    list.add(own.withIssues(issues, rollups));
+                }
+                return list;
             }
         });
+        return results;
+    }
+
+    /** Add the options every lint has, and then {@code extraOptions}, to {@code opts}. */
+    private void addOptions(Scriptable opts, Map<String, Object> extraOptions) {
+        for (Entry<String, Object> entry : extraOptions.entrySet()) {
+            opts.put(entry.getKey(), opts, Util.javaToJS(entry.getValue(), opts));
+        }
+        opts.put(IMPORTS_RULE, opts, Boolean.TRUE);
+        if (summarized) {
+            opts.put(SUMMARY_RULE, opts, Boolean.TRUE);
+        }
+        if (timed) {
+            opts.put(TIMING_OPTION, opts, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Turn the messages and stats of a reporter into a result.
+     * @param messages the messages, or null if there are none.
+     * @param stats the stats, or null if there are none.
+     * @param timing whether the rules were timed.
+     * @param nanos how long linting took, if timed.
+     */
+    @NeedsContext
+    private static CssLintResult toResult(NativeArray messages, Scriptable stats, boolean timing, long nanos) {
+        ArrayList<Issue> issueList = new ArrayList<Issue>();
+        ArrayList<Issue> rollupList = new ArrayList<Issue>();
+        for (int i = 0; messages != null && i < messages.getLength(); i++) {
+            Object obj = messages.get(i);
+            if (obj instanceof NativeObject) {
+                NativeObject nativeObj = (NativeObject) obj;
+                Object line = nativeObj.get("line");
+                Object col = nativeObj.get("col");
+                Object message = nativeObj.get("message");
+                Object type = nativeObj.get("type");
+                String rule = ruleId(nativeObj.get("rule"));
+                if (line != null && col != null && message != null) {
+                    Issue issue = new Issue(((Double) line).intValue(),
+                            ((Double) col).intValue(),
+                            (String) message.toString(),
+                            (String) type,
+                            rule);
+                    issueList.add(issue);
+                } else if (Boolean.TRUE.equals(nativeObj.get("rollup")) && message != null) {
+                    rollupList.add(new Issue(0, 0, message.toString(), (String) type, rule));
+                }
+            }
+        }
+
+        RollupSummary summary = null;
+        Object summaryObj = stats == null ? null : stats.get(SUMMARY_RULE, stats);
+        if (summaryObj instanceof Scriptable) {
+            summary = RollupSummary.fromJavaScript((Scriptable) summaryObj);
+        }
+
+        RuleTimings timings = null;
+        if (timing) {
+            Object timingObj = stats == null ? null : stats.get(TIMING_OPTION, stats);
+            timings = RuleTimings.fromJavaScript(timingObj instanceof Scriptable ? (Scriptable) timingObj : null,
+                    nanos);
+        }
+
+        List<String> imports = new ArrayList<String>();
+        Object importsObj = stats == null ? null : stats.get(IMPORTS_RULE, stats);
+        if (importsObj instanceof Scriptable) {
+            Scriptable ary = (Scriptable) importsObj;
+            for (int i = 0; i < Util.intValue("length", ary); i++) {
+                imports.add(Context.toString(ary.get(i, ary)));
+            }
+        }
+
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Object id : stats == null ? new Object[0] : stats.getIds()) {
+            Object value = id instanceof String ? stats.get((String) id, stats) : null;
+            if (value instanceof Number) {
+                // Such as "floats" and "rule-count"; our own stats are objects.
+                counts.put((String) id, Integer.valueOf(((Number) value).intValue()));
+            }
+        }
+
+        return new CssLintResult(issueList, rollupList, summary, timings, imports, counts);
+    }
+
+    /** Return the id of the rule a message came from, or null if it has none. */
+    private static String ruleId(Object rule) {
+        if (!(rule instanceof Scriptable)) {
+            return null;
+        }
+        Object id = ((Scriptable) rule).get("id", (Scriptable) rule);
+        return id instanceof CharSequence ? id.toString() : null;
+    }
+
+    /**
+     * Is the boolean option {@code o} switched on?
+     */
+    boolean isEnabled(Option o) {
+        return Boolean.TRUE.equals(options.get(o));
+    }
+
+    /**
+     * Return the compressed size stylesheets may have, or -1 if {@link Option#PAYLOAD_BUDGET} is off.
+     */
+    synchronized int payloadBudget() {
+        return payloadBudget(options);
+    }
+
+    private static int payloadBudget(Map<Option, Object> options) {
+        if (!Boolean.TRUE.equals(options.get(Option.PAYLOAD_BUDGET))) {
+            return -1;
+        }
+        Object budget = options.get(Option.PAYLOAD_BUDGET_BYTES);
+        return budget instanceof Number ? ((Number) budget).intValue() : Payload.DEFAULT_BUDGET;
+    }
+
+    /** Add the issue about the weight of {@code payload}, if it is over {@code budget}, to the rollups of a result. */
+    static CssLintResult withPayload(CssLintResult result, Payload payload, int budget) {
+        Issue issue = budget < 0 ? null : payload.check(budget);
+        if (issue == null) {
+            return result;
+        }
+        List<Issue> rollups = new ArrayList<Issue>(result.getRollups());
+        rollups.add(issue);
+        return result.withIssues(result.getIssues(), rollups);
+    }
+
+    /**
+     * Check for problems in one part of a larger stylesheet. Rules whose results depend on the rest of the stylesheet
+     * are left out, and a {@link RollupSummary} is recorded instead, for the caller to merge.
+     * @param css a String of css source code.
+     * @param minified whether the whole stylesheet is minified.
+     * @param cancellation checked while linting, or null if the lint cannot be cancelled.
+     * @return a {@link CssLintResult} which has a summary, and no rollups.
+     * @throws LintCancelledException if it was cancelled.
+     * @see ChunkedLinter
+     */
+    CssLintResult lintPart(String css, boolean minified, Cancellation cancellation) {
+        Map<String, Object> extraOptions = minified ? minifiedOptions() : new HashMap<String, Object>();
+        extraOptions.put(SUMMARY_RULE, Boolean.TRUE);
+        for (Option o : RollupSummary.CROSS_RULE_OPTIONS) {
+            extraOptions.put(o.getLowerName(), Boolean.FALSE);
+        }
+        synchronized (this) {
+            if (isEnabled(Option.DUPLICATE_BLOCKS)) {
+                extraOptions.put(BLOCKS_OPTION, Boolean.TRUE);
+            }
+            CssLintResult result = doLint(css, extraOptions, cancellation);
+            return result.withIssues(result.getIssues(), new ArrayList<Issue>());
+        }
+    }
+
+    /** The extra options which switch off {@link #MINIFIED_SKIPPED_OPTIONS}. */
+    private static Map<String, Object> minifiedOptions() {
+        Map<String, Object> extraOptions = new HashMap<String, Object>();
+        for (Option o : MINIFIED_SKIPPED_OPTIONS) {
+            extraOptions.put(o.getLowerName(), Boolean.FALSE);
+        }
+        return extraOptions;
+    }
+
+    /**
+     * Does {@code css} have comments which change the options part way, so that it must be linted as a whole and for
+     * each set of options? Mentions of csslint elsewhere, in selectors, strings or other comments, do not count.
+     */
+    static boolean hasInlineConfig(String css) {
+        return css != null && INLINE_CONFIG.matcher(css).find();
     }
 
     /**
@@ -112,27 +415,133 @@ public class CssLint {
     }
 
     /**
-     * Check for problems in css source.
+     * Check for problems in css source. Minified stylesheets, which are all on a few very long lines, are linted
+     * without {@link #MINIFIED_SKIPPED_OPTIONS}, and their issues carry character offsets.
      * @param systemId a filename
      * @param css a String of css source code.
      * @return a {@link CssLintResult}.
      */
     public CssLintResult lint(String systemId, String css) {
+        return lint(systemId, css, null);
+    }
+
+    /**
+     * Check for problems in css source, giving up if {@code cancellation} is cancelled meanwhile.
+     * @param cancellation checked before and while linting, or null if the lint cannot be cancelled.
+     * @throws LintCancelledException if it was cancelled.
+     * @see #lint(String, String)
+     */
+    public CssLintResult lint(String systemId, String css, Cancellation cancellation) {
+        LintEvent event = new LintEvent();
+        event.begin();
+        long start = System.nanoTime();
+        LineIndex index = css == null ? null : LineIndex.of(css);
+        boolean minified = index != null && index.isMinified();
         // This is synchronized, even though Rhino is thread safe, because we have multiple
         // accesses to the scope, which store state in between them. This synchronized block
         // is slightly larger than I would like, but in practical terms, it doesn't make much
         // difference. The cost of running lint is larger than the cost of pulling out the
         // results.
+        CssLintResult result;
+        long engineWait;
+        int budget;
+        long beforeLock = System.nanoTime();
         synchronized (this) {
-            return doLint(css);
+            engineWait = System.nanoTime() - beforeLock + acquireWaitNanos;
+            acquireWaitNanos = 0;
+            result = doLint(css, minified ? minifiedOptions() : Collections.<String, Object> emptyMap(), cancellation);
+            budget = payloadBudget(options);
+        }
+        if (minified) {
+            result = result.withIssues(index.locate(result.getIssues(), css), result.getRollups());
+        }
+        if (budget >= 0) {
+            result = withPayload(result, Payload.of(css), budget);
+        }
+        int length = css == null ? 0 : css.length();
+        int issueCount = result.getIssues().size() + result.getRollups().size();
+        LintMetrics.getDefault().recordLint(length, issueCount, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = systemId;
+            event.size = length;
+            event.issues = issueCount;
+            event.engineWait = engineWait;
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Check css source against several sets of options at once, parsing it only once. This costs about one parse plus
+     * the rules of every profile, rather than one parse per profile. The options of this engine are not used, but
+     * {@link #setTimed(boolean)} and {@link #setSummarized(boolean)} are. Stylesheets which configure csslint through
+     * comments are linted once per profile, as those comments change the options of each profile differently.
+     * @param systemId a filename
+     * @param css a String of css source code.
+     * @param profiles the options of each profile, with values as for {@link #addOption(Option, String)}.
+     * @return one {@link CssLintResult} per profile, in the same order.
+     */
+    public List<CssLintResult> lintProfiles(String systemId, String css, List<Map<Option, String>> profiles) {
+        long start = System.nanoTime();
+        OptionParser optionParser = new OptionParser();
+        List<Map<Option, Object>> parsed = new ArrayList<Map<Option, Object>>();
+        for (Map<Option, String> profile : profiles) {
+            Map<Option, Object> values = new EnumMap<Option, Object>(Option.class);
+            for (Entry<Option, String> entry : profile.entrySet()) {
+                values.put(entry.getKey(), optionParser.parse(entry.getKey().getType(), entry.getValue()));
+            }
+            parsed.add(values);
+        }
+        LineIndex index = css == null ? null : LineIndex.of(css);
+        boolean minified = index != null && index.isMinified();
+        Map<String, Object> extraOptions = minified ? minifiedOptions() : Collections.<String, Object> emptyMap();
+
+        List<CssLintResult> results = new ArrayList<CssLintResult>();
+        synchronized (this) {
+            acquireWaitNanos = 0;
+            if (hasInlineConfig(css)) {
+                Map<Option, Object> saved = new EnumMap<Option, Object>(options);
+                try {
+                    for (Map<Option, Object> values : parsed) {
+                        options.clear();
+                        options.putAll(values);
+                        results.add(doLint(css, extraOptions, null));
+                    }
+                } finally {
+                    options.clear();
+                    options.putAll(saved);
+                }
+            } else if (!parsed.isEmpty()) {
+                results.addAll(doLintProfiles(css, parsed, extraOptions));
+            }
+        }
+        int issueCount = 0;
+        Payload payload = null;
+        for (int k = 0; k < results.size(); k++) {
+            CssLintResult result = results.get(k);
+            if (minified) {
+                result = result.withIssues(index.locate(result.getIssues(), css), result.getRollups());
+                results.set(k, result);
+            }
+            int budget = payloadBudget(parsed.get(k));
+            if (budget >= 0) {
+                // Weighed once for every profile.
+                payload = payload == null ? Payload.of(css) : payload;
+                result = withPayload(result, payload, budget);
+                results.set(k, result);
+            }
+            issueCount += result.getIssues().size() + result.getRollups().size();
         }
+        LintMetrics.getDefault().recordLint(css == null ? 0 : css.length(), issueCount, System.nanoTime() - start);
+        return results;
     }
 
     /**
-     * Turn the set of options into a JavaScript object, where the key is the name of the option and the value is true.
+     * Turn a set of options into a JavaScript object, where the key is the name of the option and the value is true.
      */
     @NeedsContext
-    private Scriptable optionsAsCssObject() {
+    private Scriptable optionsAsCssObject(final Map<Option, Object> options) {
         return (Scriptable) contextFactory.call(new ContextAction() {
             public Object run(Context cx) {
                 Scriptable opts = cx.newObject(lintFunc);
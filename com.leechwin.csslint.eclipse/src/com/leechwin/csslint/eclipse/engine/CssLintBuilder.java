@@ -16,9 +16,31 @@ import org.mozilla.javascript.ScriptableObject;
 public class CssLintBuilder {
     private static final String CSSLINT_FILE = "lib/csslint.js";
 
+    /** Rules of our own, evaluated after every csslint.js. */
+    private static final String EXTENSION_FILE = "lib/csslint-eclipse.js";
+
     private static final Charset UTF8 = Charset.forName("UTF-8");
 
-    private ContextFactory contextFactory = new ContextFactory();
+    /** How many instructions the scripts run between checks for cancellation. */
+    private static final int OBSERVED_INSTRUCTIONS = 100000;
+
+    /** Scripts compiled in its contexts count their instructions, so that a lint can be abandoned part way. */
+    private ContextFactory contextFactory = new ContextFactory() {
+        @Override
+        protected Context makeContext() {
+            Context cx = super.makeContext();
+            cx.setInstructionObserverThreshold(OBSERVED_INSTRUCTIONS);
+            return cx;
+        }
+
+        @Override
+        protected void observeInstructionCount(Context cx, int instructionCount) {
+            Object cancellation = cx.getThreadLocal(Cancellation.class);
+            if (cancellation instanceof Cancellation && ((Cancellation) cancellation).isCancelled()) {
+                throw new CssLint.Abandoned();
+            }
+        }
+    };
 
     /**
      * Initialize the scope from a csslint.js found in the classpath. Assumes a UTF-8 encoding.
@@ -80,7 +102,7 @@ public class CssLintBuilder {
     }
 
     /**
-     * Initialize the scope with an arbitrary csslint.
+     * Initialize the scope with an arbitrary csslint. The rules in csslint-eclipse.js are added to it.
      * @param reader an input source providing csslint.js.
      * @param name the name of the resource backed by the reader
      * @return a configured {@link CssLint}
@@ -88,12 +110,29 @@ public class CssLintBuilder {
      */
     @NeedsContext
     public CssLint fromReader(Reader reader, String name) throws IOException {
+        EngineCreatedEvent event = new EngineCreatedEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             Context cx = contextFactory.enterContext();
             ScriptableObject scope = cx.initStandardObjects();
             cx.evaluateReader(scope, reader, name, 1, null);
+            Reader extension = new BufferedReader(new InputStreamReader(getClass().getClassLoader()
+                    .getResourceAsStream(EXTENSION_FILE), UTF8));
+            try {
+                cx.evaluateReader(scope, extension, EXTENSION_FILE, 1, null);
+            } finally {
+                extension.close();
+            }
             NativeObject nativeObj = (NativeObject) scope.get("CSSLint", scope);
-            return new CssLint(contextFactory, nativeObj);
+            CssLint lint = new CssLint(contextFactory, nativeObj);
+            LintMetrics.getDefault().recordEngineCreated(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.script = name;
+                event.commit();
+            }
+            return lint;
         } finally {
             Context.exit();
         }
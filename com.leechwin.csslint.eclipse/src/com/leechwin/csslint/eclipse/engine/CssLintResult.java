@@ -1,25 +1,107 @@
 package com.leechwin.csslint.eclipse.engine;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
- * The result of a lint run.
+ * The result of a lint run. Results are kept for a while by {@link ResultStore} and {@link BlockCache}, so their issues
+ * are stored compactly, in an {@link IssueTable}.
  * @author leechwin1@gmail.com
  */
 public class CssLintResult {
 
-    private final List<Issue> issues = new ArrayList<Issue>();
+    private final IssueTable issues;
+    private final IssueTable rollups;
+    private final RollupSummary summary;
+    private final RuleTimings timings;
+    private final List<String> imports;
+    private final Map<String, Integer> stats;
 
-    CssLintResult(List<Issue> issues) {
-        this.issues.addAll(issues);
+    CssLintResult(List<Issue> issues, List<Issue> rollups, RollupSummary summary) {
+        this(issues, rollups, summary, null, Collections.<String> emptyList(),
+                Collections.<String, Integer> emptyMap());
+    }
+
+    CssLintResult(List<Issue> issues, List<Issue> rollups, RollupSummary summary, RuleTimings timings,
+            List<String> imports, Map<String, Integer> stats) {
+        this.issues = IssueTable.of(issues);
+        this.rollups = IssueTable.of(rollups);
+        this.summary = summary;
+        this.timings = timings;
+        this.imports = imports;
+        this.stats = stats.isEmpty() ? Collections.<String, Integer> emptyMap() : Collections.unmodifiableMap(stats);
     }
 
     /**
-     * Return a list of all issues that lint found with this source code.
+     * Return a result with nothing to report, for files without any css in them.
+     */
+    public static CssLintResult empty() {
+        return new CssLintResult(Collections.<Issue> emptyList(), Collections.<Issue> emptyList(), null);
+    }
+
+    /**
+     * Return a copy of this result with other issues and rollups, and everything else the same.
+     */
+    CssLintResult withIssues(List<Issue> issues, List<Issue> rollups) {
+        return new CssLintResult(issues, rollups, summary, timings, imports, stats);
+    }
+
+    /**
+     * Return roughly how many bytes of heap this result holds on to.
+     */
+    public long estimateSize() {
+        long size = 72 + issues.estimateSize() + rollups.estimateSize() + 48L * stats.size();
+        for (String uri : imports) {
+            size += 48 + uri.length();
+        }
+        return summary == null ? size : size + summary.estimateSize();
+    }
+
+    /**
+     * Return a list of all issues that lint found with this source code. Results may be shared, so the list cannot
+     * be changed.
      */
     public List<Issue> getIssues() {
         return issues;
     }
 
+    /**
+     * Return the issues about the source code as a whole, such as too many floats. These have no line or column.
+     */
+    public List<Issue> getRollups() {
+        return rollups;
+    }
+
+    /**
+     * Return the counters recorded for stylesheet-wide rules, or null if they were not asked for.
+     */
+    RollupSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Return the URIs of the {@code @import} rules in the source code, as written.
+     */
+    public List<String> getImports() {
+        return Collections.unmodifiableList(imports);
+    }
+
+    /**
+     * Return the counts csslint reports about the source code as a whole, such as {@code floats},
+     * {@code font-sizes}, {@code important} and {@code rule-count}, by name. Only rules which are switched on report
+     * theirs. Results may be shared, so the map cannot be changed.
+     */
+    public Map<String, Integer> getStats() {
+        return stats;
+    }
+
+    /**
+     * Return where the time went during this lint, or null if the engine was not timed.
+     * @see CssLint#setTimed(boolean)
+     */
+    public RuleTimings getTimings() {
+        return timings;
+    }
+
 }
@@ -0,0 +1,22 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for the creation of an engine, which evaluates csslint.js.
+ */
+@Name("com.leechwin.csslint.EngineCreated")
+@Label("CSS Lint Engine Created")
+@Category("CSSLint")
+@Description("Evaluation of csslint.js into a new engine")
+@Threshold("0 ms")
+final class EngineCreatedEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    String script;
+
+}
@@ -0,0 +1,15 @@
+package com.leechwin.csslint.eclipse.engine;
+
+/**
+ * A source of configured {@link CssLint} instances which may be used at the same time. Every instance taken with
+ * {@link #acquire()} must be given back with {@link #release(CssLint)}.
+ */
+public interface EnginePool {
+
+    /** Take an instance, waiting if none is available. */
+    CssLint acquire();
+
+    /** Give back an instance obtained from {@link #acquire()}. */
+    void release(CssLint lint);
+
+}
@@ -0,0 +1,71 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as durations in nanoseconds. Values are counted in buckets that
+ * split every power of two into eight, so percentiles come out within about 6% of the real value. Recording a value
+ * is a single atomic increment.
+ */
+class Histogram {
+
+    /** Eight buckets for each power of two from 8 to 2^62, and one each for 0 to 7. */
+    private static final int BUCKETS = 61 * 8;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Count one occurrence of {@code value}. */
+    void record(long value) {
+        counts.incrementAndGet(bucketOf(Math.max(0, value)));
+    }
+
+    /** Forget everything recorded so far. */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Estimate the value below which a fraction of the recorded values fall.
+     * @param fraction between 0 and 1, for example 0.99
+     * @return the estimate, or 0 if nothing was recorded
+     */
+    long percentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen > 0 && seen >= rank) {
+                return middleOf(i);
+            }
+        }
+        return 0;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < 8) {
+            return (int) value;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (octave - 3)) & 7;
+        return (octave - 2) * 8 + sub;
+    }
+
+    private static long middleOf(int bucket) {
+        if (bucket < 8) {
+            return bucket;
+        }
+        int octave = bucket / 8 + 2;
+        int sub = bucket % 8;
+        long lower = (long) (8 + sub) << (octave - 3);
+        return lower + ((1L << (octave - 3)) >>> 1);
+    }
+
+}
@@ -10,12 +10,30 @@ public class Issue {
     private final int column;
     private final String message;
     private final String type;
+    private final String rule;
+    private final int charStart;
+    private final int charEnd;
 
     public Issue(int line, int column, String message, String type) {
+        this(line, column, message, type, null, -1, -1);
+    }
+
+    public Issue(int line, int column, String message, String type, int charStart, int charEnd) {
+        this(line, column, message, type, null, charStart, charEnd);
+    }
+
+    public Issue(int line, int column, String message, String type, String rule) {
+        this(line, column, message, type, rule, -1, -1);
+    }
+
+    public Issue(int line, int column, String message, String type, String rule, int charStart, int charEnd) {
         this.line = line;
         this.column = column;
         this.message = message;
         this.type = type;
+        this.rule = rule;
+        this.charStart = charStart;
+        this.charEnd = charEnd;
     }
 
     /**
@@ -39,6 +57,20 @@ public class Issue {
         return message;
     }
 
+    /**
+     * @return the offset in the source of the first character this issue is about, or -1 if not known.
+     */
+    public int getCharStart() {
+        return charStart;
+    }
+
+    /**
+     * @return the offset in the source after the last character this issue is about, or -1 if not known.
+     */
+    public int getCharEnd() {
+        return charEnd;
+    }
+
     /**
      * @return the name of the issue type.
      */
@@ -46,6 +78,13 @@ public class Issue {
         return type;
     }
 
+    /**
+     * @return the id of the rule which reported this issue, such as {@code zero-units}, or null if not known.
+     */
+    public String getRule() {
+        return rule;
+    }
+
     @Override
     public String toString() {
         return getLine() + ":" + getColumn() + ":" + getMessage() + ":" + getType();
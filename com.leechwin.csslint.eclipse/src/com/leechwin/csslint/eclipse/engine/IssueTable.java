@@ -0,0 +1,166 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact, read-only list of issues. The positions of the issues are kept in arrays of ints, their messages as
+ * indices into a table of the distinct messages, and their types and rules as one index into a table of the distinct
+ * pairs of them. Indices take two bytes when the table is small enough, which it nearly always is, so that an issue
+ * takes 12 bytes, or 20 with a character range. The strings are shared with every other table, as a workspace has many
+ * issues but few distinct messages. An {@link Issue} is only made when one is asked for.
+ */
+final class IssueTable extends AbstractList<Issue> implements RandomAccess {
+
+    /** How many distinct strings to share at most. Messages naming odd properties and values are many. */
+    private static final int MAX_SHARED = 16 * 1024;
+
+    private static final ConcurrentHashMap<String, String> SHARED = new ConcurrentHashMap<String, String>();
+
+    private static final IssueTable EMPTY = new IssueTable(Collections.<Issue> emptyList());
+
+    private final int[] lines;
+    private final int[] columns;
+    /** Null when no issue has a character range. */
+    private final int[] charStarts;
+    private final int[] charEnds;
+    /** Indices into {@link #messageTable} when it is short enough for them, or null. */
+    private final char[] shortMessages;
+    /** Indices into {@link #messageTable} otherwise, or null. */
+    private final int[] messages;
+    /** Indices into {@link #typeTable} and {@link #ruleTable}. */
+    private final char[] kinds;
+    private final String[] messageTable;
+    /** The type of each distinct pair of type and rule, which are few. */
+    private final String[] typeTable;
+    /** The rule of each distinct pair of type and rule. */
+    private final String[] ruleTable;
+
+    private IssueTable(List<Issue> issues) {
+        int size = issues.size();
+        lines = new int[size];
+        columns = new int[size];
+        kinds = new char[size];
+        int[] indices = new int[size];
+        boolean ranged = false;
+        for (Issue issue : issues) {
+            ranged |= issue.getCharStart() >= 0;
+        }
+        charStarts = ranged ? new int[size] : null;
+        charEnds = ranged ? new int[size] : null;
+
+        Map<String, Integer> messageIndices = new HashMap<String, Integer>();
+        List<String> messageList = new ArrayList<String>();
+        Map<String, Integer> kindIndices = new HashMap<String, Integer>();
+        List<String> typeList = new ArrayList<String>();
+        List<String> ruleList = new ArrayList<String>();
+        // Index 0 stands for null.
+        messageList.add(null);
+        for (int i = 0; i < size; i++) {
+            Issue issue = issues.get(i);
+            lines[i] = issue.getLine();
+            columns[i] = issue.getColumn();
+            if (ranged) {
+                charStarts[i] = issue.getCharStart();
+                charEnds[i] = issue.getCharEnd();
+            }
+            indices[i] = index(issue.getMessage(), messageIndices, messageList);
+            kinds[i] = kind(issue.getType(), issue.getRule(), kindIndices, typeList, ruleList);
+        }
+        messageTable = messageList.toArray(new String[messageList.size()]);
+        typeTable = typeList.toArray(new String[typeList.size()]);
+        ruleTable = ruleList.toArray(new String[ruleList.size()]);
+        if (messageTable.length <= Character.MAX_VALUE + 1) {
+            shortMessages = new char[size];
+            for (int i = 0; i < size; i++) {
+                shortMessages[i] = (char) indices[i];
+            }
+            messages = null;
+        } else {
+            shortMessages = null;
+            messages = indices;
+        }
+    }
+
+    /**
+     * Return {@code issues} as a table, or {@code issues} themselves if they are one already.
+     */
+    static IssueTable of(List<Issue> issues) {
+        if (issues instanceof IssueTable) {
+            return (IssueTable) issues;
+        }
+        return issues.isEmpty() ? EMPTY : new IssueTable(issues);
+    }
+
+    private static int index(String s, Map<String, Integer> indices, List<String> table) {
+        if (s == null) {
+            return 0;
+        }
+        Integer index = indices.get(s);
+        if (index == null) {
+            index = Integer.valueOf(table.size());
+            indices.put(s, index);
+            table.add(share(s));
+        }
+        return index.intValue();
+    }
+
+    /** Return the index of the pair of {@code type} and {@code rule}, either of which may be null. */
+    private static char kind(String type, String rule, Map<String, Integer> indices, List<String> types,
+            List<String> rules) {
+        // Neither has a line break in it, so the key is unambiguous; a leading mark tells null from "null".
+        String key = (type == null ? "-" : "+" + type) + '\n' + (rule == null ? "-" : "+" + rule);
+        Integer index = indices.get(key);
+        if (index == null) {
+            if (types.size() > Character.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct issue types and rules: " + types.size());
+            }
+            index = Integer.valueOf(types.size());
+            indices.put(key, index);
+            types.add(type == null ? null : share(type));
+            rules.add(rule == null ? null : share(rule));
+        }
+        return (char) index.intValue();
+    }
+
+    /** Return the copy of {@code s} shared by every table, if there is room for it. */
+    private static String share(String s) {
+        String shared = SHARED.get(s);
+        if (shared != null) {
+            return shared;
+        }
+        if (SHARED.size() >= MAX_SHARED) {
+            return s;
+        }
+        shared = SHARED.putIfAbsent(s, s);
+        return shared == null ? s : shared;
+    }
+
+    /** Return roughly how many bytes of heap this table holds on to, leaving out the shared strings. */
+    long estimateSize() {
+        long perIssue = (shortMessages != null ? 12 : 14) + (charStarts == null ? 0 : 8);
+        return 112 + perIssue * lines.length + 4L * (messageTable.length + typeTable.length + ruleTable.length);
+    }
+
+    @Override
+    public Issue get(int i) {
+        if (i < 0 || i >= lines.length) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + lines.length);
+        }
+        String message = messageTable[shortMessages != null ? shortMessages[i] : messages[i]];
+        return new Issue(lines[i], columns[i], message, typeTable[kinds[i]], ruleTable[kinds[i]],
+                charStarts == null ? -1 : charStarts[i], charEnds == null ? -1 : charEnds[i]);
+    }
+
+    @Override
+    public int size() {
+        return lines.length;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The offset at which each line of a text starts, computed in one pass. Used to turn the line and column of an issue
+ * into a character offset, which is what editors need to place it precisely on very long lines.
+ */
+public class LineIndex {
+
+    /** Texts shorter than this are never treated as minified. */
+    private static final int MINIFIED_MIN_LENGTH = 2048;
+
+    /** Texts whose lines are this long on average are treated as minified. */
+    private static final int MINIFIED_LINE_LENGTH = 500;
+
+    /** The longest range given to a single issue, so that a missing delimiter cannot mark the rest of the file. */
+    private static final int MAX_RANGE_LENGTH = 256;
+
+    private final int[] starts;
+    private final int lineCount;
+    private final int length;
+
+    private LineIndex(int[] starts, int lineCount, int length) {
+        this.starts = starts;
+        this.lineCount = lineCount;
+        this.length = length;
+    }
+
+    /**
+     * Index the lines of {@code text}, which are separated by {@code '\n'} as in csslint.
+     */
+    public static LineIndex of(CharSequence text) {
+        int length = text.length();
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    int[] grown = new int[count * 2];
+                    System.arraycopy(starts, 0, grown, 0, count);
+                    starts = grown;
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return new LineIndex(starts, count, length);
+    }
+
+    /** How many lines there are. */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Does the text look like the output of a minifier, with everything on a few very long lines?
+     */
+    public boolean isMinified() {
+        return length >= MINIFIED_MIN_LENGTH && length / lineCount >= MINIFIED_LINE_LENGTH;
+    }
+
+    /**
+     * Return the offset of a position in the text.
+     * @param line the line, from 1
+     * @param column the column, from 1, as csslint reports it
+     * @return the offset of that position, kept within the line and the text
+     */
+    public int offset(int line, int column) {
+        int index = Math.min(Math.max(line, 1), lineCount) - 1;
+        int start = starts[index];
+        int end = index + 1 < lineCount ? starts[index + 1] : length;
+        return Math.min(start + Math.max(column - 1, 0), end);
+    }
+
+    /**
+     * Give each issue the range of characters it is about: from its column to the end of the word there.
+     * @param issues issues found in {@code text}
+     * @param text the indexed text
+     */
+    List<Issue> locate(List<Issue> issues, CharSequence text) {
+        List<Issue> located = new ArrayList<Issue>(issues.size());
+        for (Issue issue : issues) {
+            int start = offset(issue.getLine(), issue.getColumn());
+            int limit = Math.min(text.length(), start + MAX_RANGE_LENGTH);
+            int end = start;
+            while (end < limit && !isDelimiter(text.charAt(end))) {
+                end++;
+            }
+            end = Math.max(end, Math.min(start + 1, text.length()));
+            located.add(new Issue(issue.getLine(), issue.getColumn(), issue.getMessage(), issue.getType(),
+                    issue.getRule(), start, end));
+        }
+        return located;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == ';' || c == '{' || c == '}';
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.leechwin.csslint.eclipse.engine;
+
+/**
+ * Thrown by a lint which was given up through its {@link Cancellation}.
+ */
+public class LintCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LintCancelledException() {
+        super("The lint was cancelled");
+    }
+
+}
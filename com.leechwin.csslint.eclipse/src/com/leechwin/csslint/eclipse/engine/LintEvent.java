@@ -0,0 +1,37 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for one call to {@link CssLint#lint(String, String)}.
+ */
+@Name("com.leechwin.csslint.Lint")
+@Label("CSS Lint")
+@Category("CSSLint")
+@Description("Linting of one stylesheet")
+@Threshold("10 ms")
+@StackTrace(false)
+final class LintEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @Description("Length of the stylesheet in characters")
+    int size;
+
+    @Label("Issues")
+    int issues;
+
+    @Label("Engine Wait")
+    @Description("Time spent waiting for the engine, in its pool and on its lock")
+    @Timespan(Timespan.NANOSECONDS)
+    long engineWait;
+
+}
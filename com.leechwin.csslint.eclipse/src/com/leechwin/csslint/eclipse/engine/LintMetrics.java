@@ -0,0 +1,133 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for how linting behaves in a running workspace, shared by everything which lints. Every update is a single
+ * atomic operation, with no locking, so they may be recorded on the hot path. Exposed over JMX as a
+ * {@link LintMetricsMBean}.
+ */
+public class LintMetrics implements LintMetricsMBean {
+
+    /** The name the metrics are registered under. */
+    public static final String OBJECT_NAME = "com.leechwin.csslint.eclipse:type=LintMetrics";
+
+    private static final LintMetrics instance = new LintMetrics();
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong issues = new AtomicLong();
+    private final Histogram latency = new Histogram();
+    private final AtomicLong enginesCreated = new AtomicLong();
+    private final AtomicLong engineCreationNanos = new AtomicLong();
+    private final AtomicLong poolWaitNanos = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong skippedDeltas = new AtomicLong();
+
+    /**
+     * access method for the shared metrics
+     * @return shared instance
+     */
+    public static LintMetrics getDefault() {
+        return instance;
+    }
+
+    /** Record that a file of {@code length} characters was linted in {@code nanos}, giving {@code issueCount} issues. */
+    public void recordLint(int length, int issueCount, long nanos) {
+        files.incrementAndGet();
+        bytes.addAndGet(length);
+        issues.addAndGet(issueCount);
+        latency.record(nanos);
+    }
+
+    /** Record that an engine was created in {@code nanos}. */
+    public void recordEngineCreated(long nanos) {
+        enginesCreated.incrementAndGet();
+        engineCreationNanos.addAndGet(nanos);
+    }
+
+    /** Record that a thread waited {@code nanos} for an engine. */
+    public void recordPoolWait(long nanos) {
+        poolWaitNanos.addAndGet(nanos);
+    }
+
+    /** Record a lookup in a result cache. */
+    public void recordCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).incrementAndGet();
+    }
+
+    /** Record that a changed resource did not need linting. */
+    public void recordSkippedDelta() {
+        skippedDeltas.incrementAndGet();
+    }
+
+    public long getFilesLinted() {
+        return files.get();
+    }
+
+    public long getBytesLinted() {
+        return bytes.get();
+    }
+
+    public long getIssuesReported() {
+        return issues.get();
+    }
+
+    public double getLatencyP50Millis() {
+        return millis(latency.percentile(0.5));
+    }
+
+    public double getLatencyP99Millis() {
+        return millis(latency.percentile(0.99));
+    }
+
+    public long getEnginesCreated() {
+        return enginesCreated.get();
+    }
+
+    public double getEngineCreationMillis() {
+        return millis(engineCreationNanos.get());
+    }
+
+    public double getPoolWaitMillis() {
+        return millis(poolWaitNanos.get());
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public double getCacheHitRatio() {
+        long hits = cacheHits.get();
+        long lookups = hits + cacheMisses.get();
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+
+    public long getSkippedDeltas() {
+        return skippedDeltas.get();
+    }
+
+    public void reset() {
+        files.set(0);
+        bytes.set(0);
+        issues.set(0);
+        latency.reset();
+        enginesCreated.set(0);
+        engineCreationNanos.set(0);
+        poolWaitNanos.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        skippedDeltas.set(0);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.leechwin.csslint.eclipse.engine;
+
+/**
+ * The management interface of {@link LintMetrics}. Times are in milliseconds.
+ */
+public interface LintMetricsMBean {
+
+    /** @return how many files have been linted. */
+    long getFilesLinted();
+
+    /** @return how many characters of css have been linted. */
+    long getBytesLinted();
+
+    /** @return how many issues linting has found, rollups included. */
+    long getIssuesReported();
+
+    /** @return the median time to lint a file. */
+    double getLatencyP50Millis();
+
+    /** @return the time within which 99% of files are linted. */
+    double getLatencyP99Millis();
+
+    /** @return how many engines have been created, each of which evaluates csslint.js. */
+    long getEnginesCreated();
+
+    /** @return the time spent creating engines. */
+    double getEngineCreationMillis();
+
+    /** @return the time spent waiting for an engine from the pool, when none was idle. */
+    double getPoolWaitMillis();
+
+    /** @return how many lints were answered from a cache of earlier results. */
+    long getCacheHits();
+
+    /** @return how many lints had to be run because no earlier result was cached. */
+    long getCacheMisses();
+
+    /** @return the fraction of cache lookups that were hits, or NaN if there were none. */
+    double getCacheHitRatio();
+
+    /** @return how many changed resources the builder looked at but had no need to lint. */
+    long getSkippedDeltas();
+
+    /** Set every counter back to zero. */
+    void reset();
+
+}
@@ -1,6 +1,8 @@
 package com.leechwin.csslint.eclipse.engine;
 
+import java.util.EnumSet;
 import java.util.Locale;
+import java.util.Set;
 
 public enum Option {
 
@@ -33,6 +35,11 @@ public enum Option {
     OVERQUALIFIED_ELEMENTS("Disallow overqualified elements", Boolean.class),
     SHORTHAND("Require shorthand properties", Boolean.class),
     DUPLICATE_BACKGROUND_IMAGES("Disallow duplicate background images", Boolean.class),
+    SELECTOR_COST("Keep selectors cheap to match", Boolean.class),
+    SELECTOR_COST_BUDGET("Most a selector may cost to match", Integer.class),
+    DUPLICATE_BLOCKS("Disallow repeated declaration blocks", Boolean.class),
+    PAYLOAD_BUDGET("Keep stylesheets within a compressed size budget", Boolean.class),
+    PAYLOAD_BUDGET_BYTES("Most a stylesheet may weigh compressed, in bytes", Integer.class),
 
     // Maintainability & Duplication: These rules help to ensure your code is readable and maintainable by others.
     FLOATS("Disallow too many floats", Boolean.class),
@@ -76,6 +83,13 @@ public enum Option {
         return type;
     }
 
+    /**
+     * Return the options which are switched on unless configured otherwise.
+     */
+    public static Set<Option> defaults() {
+        return EnumSet.of(BOX_MODEL, DISPLAY_PROPERTY_GROUPING, DUPLICATE_PROPERTIES, EMPTY_RULES, KNOWN_PROPERTIES);
+    }
+
     /**
      * Show this option and its description.
      */
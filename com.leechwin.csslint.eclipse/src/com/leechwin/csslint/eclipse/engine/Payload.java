@@ -0,0 +1,112 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.zip.Deflater;
+
+/**
+ * How much a stylesheet weighs as written and as sent, estimated by deflating it the way a server gzips it. The
+ * stylesheet is encoded and deflated a piece at a time into buffers kept per thread, so nothing the size of the
+ * stylesheet is allocated. Deflating at the fastest level compresses a little less than servers usually do, so the
+ * estimate errs on the heavy side.
+ */
+final class Payload {
+
+    /** About what a new connection sends in its first round trip: ten segments of 1460 bytes. */
+    static final int DEFAULT_BUDGET = 14 * 1024;
+
+    /** What gzip adds around the deflated data: a 10 byte header and an 8 byte trailer. */
+    private static final int GZIP_OVERHEAD = 18;
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The deflater and buffers of one thread, used for one stylesheet at a time. */
+    private static class Scratch {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        final CharsetEncoder encoder = UTF8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        final byte[] out = new byte[BUFFER_SIZE];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final long size;
+    private final long compressedSize;
+
+    private Payload(long size, long compressedSize) {
+        this.size = size;
+        this.compressedSize = compressedSize;
+    }
+
+    /** Weigh {@code css}, which may be null for an empty stylesheet. */
+    static Payload of(String css) {
+        Scratch scratch = SCRATCH.get();
+        Deflater deflater = scratch.deflater;
+        CharsetEncoder encoder = scratch.encoder;
+        ByteBuffer in = scratch.in;
+        CharBuffer chars = CharBuffer.wrap(css == null ? "" : css);
+        long size = 0;
+        long compressed = 0;
+        try {
+            encoder.reset();
+            boolean done = false;
+            while (!done) {
+                in.clear();
+                CoderResult cr = encoder.encode(chars, in, true);
+                if (cr.isUnderflow()) {
+                    cr = encoder.flush(in);
+                    done = cr.isUnderflow();
+                }
+                in.flip();
+                size += in.remaining();
+                deflater.setInput(in.array(), 0, in.remaining());
+                while (!deflater.needsInput()) {
+                    compressed += deflater.deflate(scratch.out);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(scratch.out);
+            }
+        } finally {
+            deflater.reset();
+        }
+        return new Payload(size, compressed + GZIP_OVERHEAD);
+    }
+
+    /** The size of the stylesheet in UTF-8, in bytes. */
+    long getSize() {
+        return size;
+    }
+
+    /** About how many bytes the stylesheet takes gzipped. */
+    long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Check the compressed size against {@code budget}.
+     * @return an issue about the stylesheet as a whole if it is over, or null if not.
+     */
+    Issue check(int budget) {
+        if (compressedSize <= budget) {
+            return null;
+        }
+        return new Issue(0, 0, "Stylesheet weighs about " + compressedSize + " bytes compressed (" + size
+                + " as written), over the budget of " + budget + " by " + (compressedSize - budget) + " bytes.",
+                "warning", Option.PAYLOAD_BUDGET.getLowerName());
+    }
+
+}
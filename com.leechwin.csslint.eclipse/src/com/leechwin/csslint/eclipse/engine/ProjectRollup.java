@@ -0,0 +1,193 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The stylesheet-wide rules evaluated over a whole project, as though all of its stylesheets were one. Each stylesheet
+ * contributes the counters of its {@link RollupSummary}; when it is linted again, its old contribution is taken away
+ * and the new one added, so the totals stay current without linting anything else.
+ */
+public class ProjectRollup {
+
+    /** What one stylesheet adds to the totals. */
+    private static class Contribution {
+        final int floats;
+        final int fontFaces;
+        final int fontSizes;
+        final int important;
+        final int[] headings;
+        /** The distinct declaration blocks, as pairs of hash and size. */
+        final long[] blocks;
+
+        Contribution(RollupSummary summary) {
+            floats = summary.getFloats();
+            fontFaces = summary.getFontFaces();
+            fontSizes = summary.getFontSizes();
+            important = summary.getImportant();
+            headings = summary.getHeadingCounts();
+            blocks = summary.getDistinctBlocks();
+        }
+    }
+
+    private static final String[] HEADINGS = RollupSummary.headingNames();
+
+    private final Map<String, Contribution> contributions = new HashMap<String, Contribution>();
+
+    private int floats;
+    private int fontFaces;
+    private int fontSizes;
+    private int important;
+    private final int[] headings = new int[HEADINGS.length];
+
+    /**
+     * Replace the contribution of one stylesheet.
+     * @param path identifies the stylesheet within the project.
+     * @param result the latest result of linting it, which must have been linted with
+     *            {@link CssLint#setSummarized(boolean)} on; if it has no summary, the stylesheet is removed.
+     */
+    public synchronized void update(String path, CssLintResult result) {
+        RollupSummary summary = result.getSummary();
+        Contribution old = summary == null ? contributions.remove(path) : contributions.put(path,
+                new Contribution(summary));
+        if (old != null) {
+            add(old, -1);
+        }
+        if (summary != null) {
+            add(contributions.get(path), 1);
+        }
+    }
+
+    /** Take away the contribution of a stylesheet which is gone, or no longer linted. */
+    public synchronized void remove(String path) {
+        Contribution old = contributions.remove(path);
+        if (old != null) {
+            add(old, -1);
+        }
+    }
+
+    /** Keep the contribution of a stylesheet which was renamed, without linting it again. */
+    public synchronized void rename(String from, String to) {
+        Contribution c = contributions.remove(from);
+        if (c != null) {
+            remove(to);
+            contributions.put(to, c);
+        }
+    }
+
+    /** Forget every stylesheet. */
+    public synchronized void clear() {
+        contributions.clear();
+        floats = fontFaces = fontSizes = important = 0;
+        for (int i = 0; i < headings.length; i++) {
+            headings[i] = 0;
+        }
+    }
+
+    /** How many stylesheets contribute to the totals? */
+    public synchronized int size() {
+        return contributions.size();
+    }
+
+    private void add(Contribution c, int sign) {
+        floats += sign * c.floats;
+        fontFaces += sign * c.fontFaces;
+        fontSizes += sign * c.fontSizes;
+        important += sign * c.important;
+        for (int i = 0; i < headings.length; i++) {
+            headings[i] += sign * c.headings[i];
+        }
+    }
+
+    /**
+     * Work out what the stylesheet-wide rules among {@code enabled} report for the project, using the same limits as
+     * for a single stylesheet.
+     * @return issues about the project as a whole, which have no position.
+     */
+    public synchronized List<Issue> report(Set<Option> enabled) {
+        List<Issue> rollups = new ArrayList<Issue>();
+        if (enabled.contains(Option.FONT_FACES) && fontFaces > 5) {
+            rollups.add(rollup(Option.FONT_FACES, "Too many @font-face declarations in this project (" + fontFaces
+                    + ")."));
+        }
+        if (enabled.contains(Option.FLOATS) && floats >= 10) {
+            rollups.add(rollup(Option.FLOATS, "Too many floats in this project (" + floats
+                    + "), you're probably using them for layout. Consider using a grid system instead."));
+        }
+        if (enabled.contains(Option.FONT_SIZES) && fontSizes >= 10) {
+            rollups.add(rollup(Option.FONT_SIZES, "Too many font-size declarations in this project (" + fontSizes
+                    + "), abstraction needed."));
+        }
+        if (enabled.contains(Option.IMPORTANT) && important >= 10) {
+            rollups.add(rollup(Option.IMPORTANT, "Too many !important declarations in this project (" + important
+                    + "), try to use less than 10 to avoid specificity issues."));
+        }
+        if (enabled.contains(Option.UNIQUE_HEADINGS)) {
+            reportHeadings(rollups);
+        }
+        if (enabled.contains(Option.DUPLICATE_BLOCKS)) {
+            reportBlocks(rollups);
+        }
+        return rollups;
+    }
+
+    /** Count the declaration blocks found in more than one stylesheet, and what writing each once would save. */
+    private void reportBlocks(List<Issue> rollups) {
+        Map<Long, Integer> stylesheets = new HashMap<Long, Integer>();
+        int repeated = 0;
+        long saved = 0;
+        for (Contribution c : contributions.values()) {
+            for (int i = 0; i < c.blocks.length; i += 2) {
+                Long hash = Long.valueOf(c.blocks[i]);
+                Integer count = stylesheets.get(hash);
+                stylesheets.put(hash, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+                if (count != null) {
+                    repeated += count.intValue() == 1 ? 1 : 0;
+                    saved += c.blocks[i + 1];
+                }
+            }
+        }
+        if (repeated > 0) {
+            rollups.add(rollup(Option.DUPLICATE_BLOCKS, repeated
+                    + " declaration blocks are repeated across stylesheets in this project;"
+                    + " writing each once would save about " + saved + " bytes."));
+        }
+    }
+
+    private void reportHeadings(List<Issue> rollups) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < HEADINGS.length; i++) {
+            if (headings[i] > 1) {
+                sb.append(sb.length() == 0 ? "You have " : ", ").append(headings[i]).append(' ').append(HEADINGS[i])
+                        .append("s (").append(definersOf(i)).append(')');
+            }
+        }
+        if (sb.length() > 0) {
+            rollups.add(rollup(Option.UNIQUE_HEADINGS, sb.append(" defined in this project.").toString()));
+        }
+    }
+
+    /** List the stylesheets which define the {@code i}th heading, in path order. */
+    private String definersOf(int i) {
+        Set<String> paths = new TreeSet<String>();
+        for (Map.Entry<String, Contribution> entry : contributions.entrySet()) {
+            if (entry.getValue().headings[i] > 0) {
+                paths.add(entry.getKey());
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String path : paths) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(path);
+        }
+        return sb.toString();
+    }
+
+    private static Issue rollup(Option rule, String message) {
+        return new Issue(0, 0, message, "warning", rule.getLowerName());
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lint results keyed by what they depend on: the content of the stylesheet, and a fingerprint of the options it was
+ * linted with. Identical stylesheets, such as copies of the same library in several projects, are then linted once.
+ * Lookups are single-flight: when several threads ask for the same key at once, one of them lints and the others wait
+ * for its result. The least recently used entries are dropped once the store is full.
+ */
+public class ResultStore {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Results, whether linted or still being linted, least recently used first. Guarded by {@code this}. */
+    private final Map<String, Future<CssLintResult>> results;
+
+    /**
+     * @param capacity the most results to keep.
+     */
+    public ResultStore(final int capacity) {
+        results = new LinkedHashMap<String, Future<CssLintResult>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<CssLintResult>> eldest) {
+                return size() > Math.max(1, capacity);
+            }
+        };
+    }
+
+    /**
+     * Return the result for {@code css} linted with the options identified by {@code fingerprint}, calling
+     * {@code lint} to compute it if nobody has yet. Must not be called while holding an engine, as the thread may
+     * wait for another which needs one.
+     * @throws Exception whatever {@code lint} throws, for the caller that ran it and for every caller waiting on it.
+     */
+    public CssLintResult get(String fingerprint, String css, Callable<CssLintResult> lint) throws Exception {
+        String key = fingerprint + '/' + css.length() + '/' + digest(css);
+        Future<CssLintResult> future;
+        FutureTask<CssLintResult> task = null;
+        synchronized (this) {
+            future = results.get(key);
+            if (future == null) {
+                task = new FutureTask<CssLintResult>(lint);
+                future = task;
+                results.put(key, task);
+            }
+        }
+        LintMetrics.getDefault().recordCacheLookup(task == null);
+        if (task != null) {
+            // Outside the lock: linting takes a while, and other keys must not wait for it.
+            task.run();
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // Do not remember failures; the next caller tries again.
+            synchronized (this) {
+                results.remove(key, future);
+            }
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new ExecutionException(cause);
+        }
+    }
+
+    /** Forget every result. */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /** Forget the least recently used results, so that at most {@code keep} remain. */
+    public synchronized void trim(int keep) {
+        for (Iterator<String> i = results.keySet().iterator(); results.size() > Math.max(0, keep) && i.hasNext();) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    /** Return roughly how many bytes of heap the stored results hold on to. Results still being linted count as none. */
+    public synchronized long estimateSize() {
+        long size = 0;
+        for (Map.Entry<String, Future<CssLintResult>> entry : results.entrySet()) {
+            size += 48 + entry.getKey().length();
+            Future<CssLintResult> future = entry.getValue();
+            if (future.isDone()) {
+                try {
+                    size += future.get().estimateSize();
+                } catch (ExecutionException e) {
+                    // Failures are about to be removed, and hold nothing.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return size;
+    }
+
+    /** How many results are stored. */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /** Return a hex SHA-256 digest of {@code css}. */
+    static String digest(String css) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(css.getBytes(UTF8));
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,424 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The counters and definitions that stylesheet-wide rules depend on, as recorded by the <i>rollup-summary</i> rule in
+ * csslint-eclipse.js. Summaries of separately linted parts of a stylesheet can be appended to one another, and the
+ * stylesheet-wide rules then re-evaluated on the whole, giving the same results as linting the stylesheet in one go.
+ * @see ChunkedLinter
+ */
+public class RollupSummary {
+
+    /** Options whose results depend on more than one rule set, and so must be computed from a summary. */
+    static final Set<Option> CROSS_RULE_OPTIONS = Collections.unmodifiableSet(EnumSet.of(Option.UNIQUE_HEADINGS,
+            Option.DUPLICATE_BACKGROUND_IMAGES, Option.OVERQUALIFIED_ELEMENTS, Option.DUPLICATE_BLOCKS));
+
+    private static final String[] HEADINGS = { "h1", "h2", "h3", "h4", "h5", "h6" };
+
+    /** Something found at a position in the stylesheet. */
+    private static class Occurrence {
+        final String name;
+        final String text;
+        final String extra;
+        final boolean flag;
+        final int line;
+        final int column;
+
+        Occurrence(String name, String text, String extra, boolean flag, int line, int column) {
+            this.name = name;
+            this.text = text;
+            this.extra = extra;
+            this.flag = flag;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    private int floats;
+    private int fontFaces;
+    private int fontSizes;
+    private int important;
+    private final List<Occurrence> headings = new ArrayList<Occurrence>();
+    private final List<Occurrence> backgrounds = new ArrayList<Occurrence>();
+    private final List<Occurrence> ids = new ArrayList<Occurrence>();
+    private final List<Occurrence> classes = new ArrayList<Occurrence>();
+
+    /** The selectors, their total cost, and how many cost more than the budget; only with selector-cost on. */
+    private int selectors;
+    private int selectorCost;
+    private int overBudget;
+    private int budget;
+    /** Where the first of the costliest selectors is, or null. */
+    private Occurrence costliest;
+    private int highestCost;
+
+    /** The hash, minified size and position of each declaration block; only with duplicate-blocks on. */
+    private long[] blockHashes = new long[0];
+    private int[] blockSizes = new int[0];
+    private int[] blockLines = new int[0];
+    private int[] blockColumns = new int[0];
+    private int blockCount;
+
+    /**
+     * Read the summary object produced by the <i>rollup-summary</i> rule.
+     */
+    @NeedsContext
+    static RollupSummary fromJavaScript(Scriptable obj) {
+        RollupSummary summary = new RollupSummary();
+        summary.floats = Util.intValue("floats", obj);
+        summary.fontFaces = Util.intValue("fontFaces", obj);
+        summary.fontSizes = Util.intValue("fontSizes", obj);
+        summary.important = Util.intValue("important", obj);
+        for (Object[] a : Util.listValue("headings", obj, ROW)) {
+            summary.headings.add(new Occurrence(str(a[0]), str(a[1]), null, false, num(a[2]), num(a[3])));
+        }
+        for (Object[] a : Util.listValue("backgrounds", obj, ROW)) {
+            summary.backgrounds.add(new Occurrence(str(a[0]), null, null, false, num(a[1]), num(a[2])));
+        }
+        for (Object[] a : Util.listValue("ids", obj, ROW)) {
+            summary.ids.add(new Occurrence(null, str(a[0]), str(a[1]), false, num(a[2]), num(a[3])));
+        }
+        for (Object[] a : Util.listValue("classes", obj, ROW)) {
+            summary.classes.add(new Occurrence(str(a[0]), str(a[1]), null, num(a[4]) != 0, num(a[2]), num(a[3])));
+        }
+        Object cost = obj.get("selectorCost", obj);
+        if (cost instanceof Scriptable) {
+            Object[] a = ROW.convert(cost);
+            summary.selectors = num(a[0]);
+            summary.selectorCost = num(a[1]);
+            summary.overBudget = num(a[2]);
+            summary.budget = num(a[6]);
+            if (summary.selectors > 0) {
+                summary.highestCost = num(a[3]);
+                summary.costliest = new Occurrence(null, null, null, false, num(a[4]), num(a[5]));
+            }
+        }
+        Object blocks = obj.get("blocks", obj);
+        if (blocks instanceof Scriptable) {
+            Scriptable ary = (Scriptable) blocks;
+            int count = Util.intValue("length", ary) / 4;
+            summary.ensureBlocks(count);
+            for (int i = 0; i < count; i++) {
+                summary.blockHashes[i] = hash(str(ary.get(4 * i, ary)));
+                summary.blockSizes[i] = num(ary.get(4 * i + 1, ary));
+                summary.blockLines[i] = num(ary.get(4 * i + 2, ary));
+                summary.blockColumns[i] = num(ary.get(4 * i + 3, ary));
+            }
+            summary.blockCount = count;
+        }
+        return summary;
+    }
+
+    /** Make room for {@code count} declaration blocks in all. */
+    private void ensureBlocks(int count) {
+        if (count > blockHashes.length) {
+            int length = Math.max(count, 2 * blockHashes.length);
+            blockHashes = Arrays.copyOf(blockHashes, length);
+            blockSizes = Arrays.copyOf(blockSizes, length);
+            blockLines = Arrays.copyOf(blockLines, length);
+            blockColumns = Arrays.copyOf(blockColumns, length);
+        }
+    }
+
+    /** Convert a JavaScript array into a Java one. */
+    private static final Util.Converter<Object[]> ROW = new Util.Converter<Object[]>() {
+        public Object[] convert(Object obj) {
+            Scriptable ary = (Scriptable) obj;
+            Object[] row = new Object[Util.intValue("length", ary)];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = ary.get(i, ary);
+            }
+            return row;
+        }
+    };
+
+    private static String str(Object o) {
+        return Context.toString(o);
+    }
+
+    private static int num(Object o) {
+        return (int) Context.toNumber(o);
+    }
+
+    /** Hash a declaration block into 64 bits with FNV-1a, so that blocks are compared without keeping their text. */
+    private static long hash(String block) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < block.length(); i++) {
+            h = (h ^ block.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** Return roughly how many bytes of heap this summary holds on to. */
+    long estimateSize() {
+        return 128 + 64L * (headings.size() + backgrounds.size() + ids.size() + classes.size())
+                + 20L * blockHashes.length;
+    }
+
+    /**
+     * Add the summary of the next part of the stylesheet. The part itself is left as it is.
+     * @param part a summary of a part linted on its own
+     * @param firstLine the line in the whole stylesheet on which the part starts, from 1
+     * @param firstColumn the number of characters before the part on its first line
+     */
+    void append(RollupSummary part, int firstLine, int firstColumn) {
+        floats += part.floats;
+        fontFaces += part.fontFaces;
+        fontSizes += part.fontSizes;
+        important += part.important;
+        append(headings, part.headings, firstLine, firstColumn);
+        append(backgrounds, part.backgrounds, firstLine, firstColumn);
+        append(ids, part.ids, firstLine, firstColumn);
+        append(classes, part.classes, firstLine, firstColumn);
+        selectors += part.selectors;
+        selectorCost += part.selectorCost;
+        overBudget += part.overBudget;
+        budget = part.budget != 0 ? part.budget : budget;
+        if (part.costliest != null && (costliest == null || part.highestCost > highestCost)) {
+            Occurrence o = part.costliest;
+            highestCost = part.highestCost;
+            costliest = new Occurrence(null, null, null, false, o.line + firstLine - 1,
+                    o.line == 1 ? o.column + firstColumn : o.column);
+        }
+        ensureBlocks(blockCount + part.blockCount);
+        for (int i = 0; i < part.blockCount; i++) {
+            int line = part.blockLines[i];
+            blockHashes[blockCount] = part.blockHashes[i];
+            blockSizes[blockCount] = part.blockSizes[i];
+            blockLines[blockCount] = line + firstLine - 1;
+            blockColumns[blockCount] = line == 1 ? part.blockColumns[i] + firstColumn : part.blockColumns[i];
+            blockCount++;
+        }
+    }
+
+    private static void append(List<Occurrence> to, List<Occurrence> from, int firstLine, int firstColumn) {
+        // Copy, as the part may be cached and appended again at another position.
+        for (Occurrence o : from) {
+            int column = o.line == 1 ? o.column + firstColumn : o.column;
+            to.add(new Occurrence(o.name, o.text, o.extra, o.flag, o.line + firstLine - 1, column));
+        }
+    }
+
+    int getFloats() {
+        return floats;
+    }
+
+    int getFontFaces() {
+        return fontFaces;
+    }
+
+    int getFontSizes() {
+        return fontSizes;
+    }
+
+    int getImportant() {
+        return important;
+    }
+
+    /** Count how many times each of h1 to h6 is defined. Other names are left out, as csslint does not count them. */
+    int[] getHeadingCounts() {
+        int[] counts = new int[HEADINGS.length];
+        for (Occurrence o : headings) {
+            int i = Arrays.asList(HEADINGS).indexOf(o.name);
+            if (i >= 0) {
+                counts[i]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Return the distinct declaration blocks as pairs of hash and minified size, or an empty array if they were not
+     * recorded.
+     */
+    long[] getDistinctBlocks() {
+        Map<Long, Integer> sizes = new LinkedHashMap<Long, Integer>();
+        for (int i = 0; i < blockCount; i++) {
+            Long hash = Long.valueOf(blockHashes[i]);
+            if (!sizes.containsKey(hash)) {
+                sizes.put(hash, Integer.valueOf(blockSizes[i]));
+            }
+        }
+        long[] blocks = new long[2 * sizes.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : sizes.entrySet()) {
+            blocks[i++] = entry.getKey().longValue();
+            blocks[i++] = entry.getValue().intValue();
+        }
+        return blocks;
+    }
+
+    /** The names of the headings counted by {@link #getHeadingCounts()}, in the same order. */
+    static String[] headingNames() {
+        return HEADINGS.clone();
+    }
+
+    /**
+     * Work out what the stylesheet-wide rules among {@code enabled} report for the summarized stylesheet.
+     * @param issues receives the issues which have a position.
+     * @param rollups receives the issues about the stylesheet as a whole.
+     */
+    void report(Set<Option> enabled, List<Issue> issues, List<Issue> rollups) {
+        if (enabled.contains(Option.DUPLICATE_BACKGROUND_IMAGES)) {
+            reportBackgrounds(issues);
+        }
+        if (enabled.contains(Option.OVERQUALIFIED_ELEMENTS)) {
+            reportOverqualified(issues);
+        }
+        // Rollups in the order csslint reports them, which is that of the options.
+        if (enabled.contains(Option.FONT_FACES) && fontFaces > 5) {
+            rollups.add(rollup(Option.FONT_FACES, "Too many @font-face declarations (" + fontFaces + ")."));
+        }
+        if (enabled.contains(Option.SELECTOR_COST) && overBudget > 0) {
+            rollups.add(rollup(Option.SELECTOR_COST, "Selectors cost " + selectorCost + " to match in all, "
+                    + String.format(Locale.ROOT, "%.1f", (double) selectorCost / selectors) + " on average; "
+                    + overBudget + " of " + selectors + " are over the budget of " + budget + ", the costliest ("
+                    + highestCost + ") at line " + costliest.line + "."));
+        }
+        if (enabled.contains(Option.DUPLICATE_BLOCKS)) {
+            reportBlocks(issues, rollups);
+        }
+        if (enabled.contains(Option.FLOATS) && floats >= 10) {
+            rollups.add(rollup(Option.FLOATS, "Too many floats (" + floats
+                    + "), you're probably using them for layout. Consider using a grid system instead."));
+        }
+        if (enabled.contains(Option.FONT_SIZES) && fontSizes >= 10) {
+            rollups.add(rollup(Option.FONT_SIZES, "Too many font-size declarations (" + fontSizes
+                    + "), abstraction needed."));
+        }
+        if (enabled.contains(Option.IMPORTANT) && important >= 10) {
+            rollups.add(rollup(Option.IMPORTANT, "Too many !important declarations (" + important
+                    + "), try to use less than 10 to avoid specificity issues."));
+        }
+        if (enabled.contains(Option.UNIQUE_HEADINGS)) {
+            reportHeadings(issues, rollups);
+        }
+        sortByLine(issues);
+    }
+
+    private void reportBlocks(List<Issue> issues, List<Issue> rollups) {
+        Map<Long, Integer> first = new HashMap<Long, Integer>();
+        int repeats = 0;
+        long saved = 0;
+        for (int i = 0; i < blockCount; i++) {
+            Integer seen = first.get(Long.valueOf(blockHashes[i]));
+            if (seen == null) {
+                first.put(Long.valueOf(blockHashes[i]), Integer.valueOf(i));
+            } else {
+                int j = seen.intValue();
+                repeats++;
+                saved += blockSizes[i];
+                issues.add(new Issue(blockLines[i], blockColumns[i], "Declaration block repeats the one at line "
+                        + blockLines[j] + ", col " + blockColumns[j] + "; grouping the selectors would save about "
+                        + blockSizes[i] + " bytes.", "warning", Option.DUPLICATE_BLOCKS.getLowerName()));
+            }
+        }
+        if (repeats > 0) {
+            rollups.add(rollup(Option.DUPLICATE_BLOCKS, repeats
+                    + " declaration blocks repeat earlier ones; grouping their selectors would save about " + saved
+                    + " bytes."));
+        }
+    }
+
+    private void reportBackgrounds(List<Issue> issues) {
+        Map<String, Occurrence> first = new HashMap<String, Occurrence>();
+        for (Occurrence o : backgrounds) {
+            Occurrence seen = first.get(o.name);
+            if (seen == null) {
+                first.put(o.name, o);
+            } else {
+                issues.add(warning(o, Option.DUPLICATE_BACKGROUND_IMAGES, "Background image '" + o.name
+                        + "' was used multiple times, first declared at line " + seen.line + ", col " + seen.column
+                        + "."));
+            }
+        }
+    }
+
+    private void reportOverqualified(List<Issue> issues) {
+        for (Occurrence o : ids) {
+            issues.add(warning(o, Option.OVERQUALIFIED_ELEMENTS, "Element (" + o.text
+                    + ") is overqualified, just use " + o.extra + " without element name."));
+        }
+        Map<String, List<Occurrence>> uses = new LinkedHashMap<String, List<Occurrence>>();
+        for (Occurrence o : classes) {
+            List<Occurrence> list = uses.get(o.name);
+            if (list == null) {
+                list = new ArrayList<Occurrence>();
+                uses.put(o.name, list);
+            }
+            list.add(o);
+        }
+        for (List<Occurrence> list : uses.values()) {
+            // One use means that this is overqualified.
+            Occurrence o = list.get(0);
+            if (list.size() == 1 && o.flag) {
+                issues.add(warning(o, Option.OVERQUALIFIED_ELEMENTS, "Element (" + o.text
+                        + ") is overqualified, just use " + o.name + " without element name."));
+            }
+        }
+    }
+
+    private void reportHeadings(List<Issue> issues, List<Issue> rollups) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String h : HEADINGS) {
+            counts.put(h, Integer.valueOf(0));
+        }
+        for (Occurrence o : headings) {
+            Integer count = counts.get(o.name);
+            if (count == null) {
+                // csslint counts these as NaN, which is never more than one.
+                continue;
+            }
+            counts.put(o.name, Integer.valueOf(count.intValue() + 1));
+            if (count.intValue() + 1 > 1) {
+                issues.add(warning(o, Option.UNIQUE_HEADINGS, "Heading (" + o.text + ") has already been defined."));
+            }
+        }
+        List<String> messages = new ArrayList<String>();
+        for (String h : HEADINGS) {
+            int count = counts.get(h).intValue();
+            if (count > 1) {
+                messages.add(count + " " + h + "s");
+            }
+        }
+        if (!messages.isEmpty()) {
+            StringBuilder sb = new StringBuilder("You have ");
+            for (int i = 0; i < messages.size(); i++) {
+                sb.append(i == 0 ? "" : ", ").append(messages.get(i));
+            }
+            rollups.add(rollup(Option.UNIQUE_HEADINGS, sb.append(" defined in this stylesheet.").toString()));
+        }
+    }
+
+    private static Issue warning(Occurrence o, Option rule, String message) {
+        return new Issue(o.line, o.column, message, "warning", rule.getLowerName());
+    }
+
+    private static Issue rollup(Option rule, String message) {
+        return new Issue(0, 0, message, "warning", rule.getLowerName());
+    }
+
+    /** Sort issues by line, keeping the order of issues on the same line. */
+    static void sortByLine(List<Issue> issues) {
+        Collections.sort(issues, new Comparator<Issue>() {
+            public int compare(Issue a, Issue b) {
+                return a.getLine() < b.getLine() ? -1 : (a.getLine() == b.getLine() ? 0 : 1);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Where the time went while linting: how long each rule spent in its listeners, and how long was left for parsing.
+ * Recorded by the rule timing wrapper in csslint-eclipse.js when {@link CssLint#setTimed(boolean)} is on. Timings of
+ * several lints can be added together, for example to sum up a build.
+ */
+public class RuleTimings {
+
+    /** The time spent in one rule. */
+    public static class Timing {
+        private final String rule;
+        private long nanos;
+        private long calls;
+
+        Timing(String rule) {
+            this.rule = rule;
+        }
+
+        /** @return the id of the rule, as in {@link Option#getLowerName()}. */
+        public String getRule() {
+            return rule;
+        }
+
+        /** @return the time spent in the rule, in nanoseconds. */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /** @return how many parser events the rule handled. */
+        public long getCalls() {
+            return calls;
+        }
+    }
+
+    private final Map<String, Timing> timings = new HashMap<String, Timing>();
+    private long totalNanos;
+    private int lints;
+
+    /**
+     * Read the "rule-timing" stat.
+     * @param obj the stat, or null if no rule ran.
+     * @param totalNanos how long the whole lint took.
+     */
+    @NeedsContext
+    static RuleTimings fromJavaScript(Scriptable obj, long totalNanos) {
+        RuleTimings result = new RuleTimings();
+        result.totalNanos = totalNanos;
+        result.lints = 1;
+        if (obj == null) {
+            return result;
+        }
+        for (Object id : obj.getIds()) {
+            Scriptable pair = (Scriptable) obj.get(id.toString(), obj);
+            Timing timing = result.timing(id.toString());
+            timing.nanos = (long) Context.toNumber(pair.get(0, pair));
+            timing.calls = (long) Context.toNumber(pair.get(1, pair));
+        }
+        return result;
+    }
+
+    private Timing timing(String rule) {
+        Timing timing = timings.get(rule);
+        if (timing == null) {
+            timing = new Timing(rule);
+            timings.put(rule, timing);
+        }
+        return timing;
+    }
+
+    /**
+     * Put together the timings of the parts of a single lint, such as the blocks of a large stylesheet, which may have
+     * been linted at once on several threads. The rule times are added up over the parts, and so may come to more
+     * than {@code totalNanos}, the time the whole lint took.
+     */
+    static RuleTimings ofParts(List<RuleTimings> parts, long totalNanos) {
+        RuleTimings result = new RuleTimings();
+        result.totalNanos = totalNanos;
+        result.lints = 1;
+        for (RuleTimings part : parts) {
+            result.addRules(part);
+        }
+        return result;
+    }
+
+    /**
+     * Add the timings of another lint to these.
+     */
+    public void add(RuleTimings other) {
+        totalNanos += other.totalNanos;
+        lints += other.lints;
+        addRules(other);
+    }
+
+    private void addRules(RuleTimings other) {
+        for (Timing t : other.timings.values()) {
+            Timing timing = timing(t.rule);
+            timing.nanos += t.nanos;
+            timing.calls += t.calls;
+        }
+    }
+
+    /** @return how many lints were added up. */
+    public int getLints() {
+        return lints;
+    }
+
+    /** @return the time spent linting, in nanoseconds. */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /** @return the time spent in rules, in nanoseconds. */
+    public long getRuleNanos() {
+        long nanos = 0;
+        for (Timing t : timings.values()) {
+            nanos += t.nanos;
+        }
+        return nanos;
+    }
+
+    /** @return the time spent outside of rules, which is mostly parsing, in nanoseconds. */
+    public long getParseNanos() {
+        return Math.max(0, totalNanos - getRuleNanos());
+    }
+
+    /** @return the time spent in each rule, the most expensive first. */
+    public List<Timing> getTimings() {
+        List<Timing> list = new ArrayList<Timing>(timings.values());
+        Collections.sort(list, new Comparator<Timing>() {
+            public int compare(Timing a, Timing b) {
+                return a.nanos > b.nanos ? -1 : (a.nanos == b.nanos ? a.rule.compareTo(b.rule) : 1);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * One line for the totals, then one line per rule, the most expensive first.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d lints in %d ms: parsing %d ms, rules %d ms", lints, millis(totalNanos),
+                millis(getParseNanos()), millis(getRuleNanos())));
+        for (Timing t : getTimings()) {
+            sb.append(String.format("%n  %-32s %8d ms %10d calls", t.rule, millis(t.nanos), t.calls));
+        }
+        return sb.toString();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.leechwin.csslint.eclipse.engine;
+
+import java.util.Locale;
+
+/**
+ * Pull the css out of a markup file, such as HTML, JSP, Vue or Svelte, in a single pass and without building a
+ * document tree. The contents of {@code <style>} elements are kept as they are, and the value of every {@code style}
+ * attribute becomes a rule of its own, {@code a{...}}, written over the attribute's name and quotes. Everything else is
+ * blanked out, except for line breaks, so the result is exactly as long as the file and every character stays on the
+ * same line and column. All of a file's css can then be linted in one go, and the positions of the issues are already
+ * those of the file.
+ * <p>
+ * Style elements in other languages, such as {@code <style lang="scss">}, are left out, as are scripts, comments and
+ * JSP scriptlets.
+ */
+public class StyleExtractor {
+
+    private final String text;
+    private final char[] out;
+    private int pos;
+    private boolean found;
+
+    private StyleExtractor(String text) {
+        this.text = text;
+        this.out = new char[text.length()];
+    }
+
+    /**
+     * Return the css in {@code text}, positioned as it is in the file, or null if there is none.
+     */
+    public static String extract(String text) {
+        StyleExtractor extractor = new StyleExtractor(text);
+        extractor.run();
+        if (!extractor.found) {
+            return null;
+        }
+        String css = new String(extractor.out);
+        assert css.length() == text.length() && lineBreaksMatch(text, css) : "extracted css has moved lines";
+        return css;
+    }
+
+    /** Are the line breaks of {@code css} exactly those of {@code text}? */
+    private static boolean lineBreaksMatch(String text, String css) {
+        for (int i = 0; i < text.length(); i++) {
+            char t = text.charAt(i);
+            char c = css.charAt(i);
+            if ((isLineBreak(t) || isLineBreak(c)) && t != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run() {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            out[i] = isLineBreak(c) ? c : ' ';
+        }
+        while (pos < length) {
+            if (text.charAt(pos) != '<') {
+                pos++;
+            } else if (text.startsWith("<!--", pos)) {
+                pos = skipPast("-->", pos + 4);
+            } else if (text.startsWith("<%", pos)) {
+                pos = skipPast("%>", pos + 2);
+            } else {
+                tag();
+            }
+        }
+    }
+
+    /** Read the tag at {@code pos}, and the contents of the element if they are css or script. */
+    private void tag() {
+        int length = text.length();
+        int start = pos + 1;
+        boolean closing = start < length && text.charAt(start) == '/';
+        int nameStart = closing ? start + 1 : start;
+        int nameEnd = nameStart;
+        while (nameEnd < length && isNameChar(text.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        if (nameEnd == nameStart || !Character.isLetter(text.charAt(nameStart))) {
+            // Just a less-than sign.
+            pos = start;
+            return;
+        }
+        String name = text.substring(nameStart, nameEnd).toLowerCase(Locale.ENGLISH);
+        boolean css = true;
+        boolean selfClosing = false;
+        pos = nameEnd;
+        while (pos < length) {
+            char c = text.charAt(pos);
+            if (c == '>') {
+                pos++;
+                break;
+            } else if (c == '/') {
+                selfClosing = true;
+                pos++;
+            } else if (isNameChar(c) || c == ':' || c == '@') {
+                selfClosing = false;
+                css &= attribute(closing);
+            } else {
+                pos++;
+            }
+        }
+        if (closing || selfClosing) {
+            return;
+        }
+        if (name.equals("style")) {
+            int end = find("</style", pos);
+            if (css) {
+                copy(pos, end);
+            }
+            pos = end;
+        } else if (name.equals("script")) {
+            pos = find("</script", pos);
+        }
+    }
+
+    /**
+     * Read the attribute at {@code pos}, copying its value if it is a style attribute.
+     * @return false if the attribute says that the element is not css.
+     */
+    private boolean attribute(boolean closing) {
+        int length = text.length();
+        int nameStart = pos;
+        while (pos < length && (isNameChar(text.charAt(pos)) || text.charAt(pos) == ':' || text.charAt(pos) == '@')) {
+            pos++;
+        }
+        String name = text.substring(nameStart, pos).toLowerCase(Locale.ENGLISH);
+        int i = pos;
+        while (i < length && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        if (i >= length || text.charAt(i) != '=') {
+            return true;
+        }
+        i++;
+        while (i < length && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        if (i >= length) {
+            pos = i;
+            return true;
+        }
+
+        int valueStart;
+        int valueEnd;
+        char q = text.charAt(i);
+        if (q == '"' || q == '\'') {
+            valueStart = i + 1;
+            valueEnd = text.indexOf(q, valueStart);
+            valueEnd = valueEnd < 0 ? length : valueEnd;
+            pos = Math.min(length, valueEnd + 1);
+        } else if (q == '{') {
+            // A template expression, which may hold anything.
+            valueStart = i;
+            valueEnd = matchBrace(i);
+            pos = valueEnd;
+            return true;
+        } else {
+            valueStart = i;
+            valueEnd = i;
+            while (valueEnd < length && !Character.isWhitespace(text.charAt(valueEnd))
+                    && text.charAt(valueEnd) != '>') {
+                valueEnd++;
+            }
+            pos = valueEnd;
+        }
+
+        String value = text.substring(valueStart, valueEnd).trim().toLowerCase(Locale.ENGLISH);
+        if (name.equals("style") && !closing) {
+            // Write "a{" over the "=" and the quote, or the end of the name, and "}" just after the value. Line breaks
+            // are stepped over, so that the rule never moves a line.
+            int close = valueEnd;
+            while (close < length && isLineBreak(text.charAt(close))) {
+                close++;
+            }
+            // A value which runs to the end of the file is in a tag which is never closed, and is left out.
+            if (close < length && !value.isEmpty()) {
+                copy(valueStart, valueEnd);
+                int brace = before(valueStart);
+                out[before(brace)] = 'a';
+                out[brace] = '{';
+                out[close] = '}';
+            }
+        } else if (name.equals("lang")) {
+            return value.equals("css");
+        } else if (name.equals("type")) {
+            return value.isEmpty() || value.equals("text/css");
+        }
+        return true;
+    }
+
+    /** Copy the text from {@code start} to {@code end} as it is, apart from JSP scriptlets. */
+    private void copy(int start, int end) {
+        found = true;
+        int i = start;
+        while (i < end) {
+            if (text.startsWith("<%", i)) {
+                // Leave the scriptlet blank.
+                i = Math.min(end, skipPast("%>", i + 2));
+            } else {
+                out[i] = text.charAt(i);
+                i++;
+            }
+        }
+    }
+
+    /** Return the position of {@code closing}, ignoring case, from {@code from}; or the end of the text. */
+    private int find(String closing, int from) {
+        int length = text.length();
+        for (int i = text.indexOf('<', from); i >= 0; i = text.indexOf('<', i + 1)) {
+            if (text.regionMatches(true, i, closing, 0, closing.length())) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /** Return the position just after {@code end}, from {@code from}; or the end of the text. */
+    private int skipPast(String end, int from) {
+        int i = text.indexOf(end, from);
+        return i < 0 ? text.length() : i + end.length();
+    }
+
+    /** Return the position just after the brace matching the one at {@code open}. */
+    private int matchBrace(int open) {
+        int depth = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+
+    /** Return the last position before {@code i} which is not a line break; the name of the attribute has some. */
+    private int before(int i) {
+        int j = i - 1;
+        while (isLineBreak(text.charAt(j))) {
+            j--;
+        }
+        return j;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.';
+    }
+
+}
@@ -1,6 +1,5 @@
 package com.leechwin.csslint.eclipse.preferences;
 
-import java.util.EnumSet;
 import java.util.Set;
 
 import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
@@ -17,8 +16,7 @@ public class PreferencesInitializer extends AbstractPreferenceInitializer {
 
     public static final String PREDEF_ID = Activator.PLUGIN_ID + ".preference.predef";
 
-    private final Set<Option> defaultEnable = EnumSet.of(Option.BOX_MODEL, Option.DISPLAY_PROPERTY_GROUPING,
-            Option.DUPLICATE_PROPERTIES, Option.EMPTY_RULES, Option.KNOWN_PROPERTIES);
+    private final Set<Option> defaultEnable = Option.defaults();
 
     @Override
     public void initializeDefaultPreferences() {
@@ -26,6 +24,10 @@ public class PreferencesInitializer extends AbstractPreferenceInitializer {
         for (Option o : defaultEnable) {
             node.putBoolean(o.getLowerName(), true);
         }
+        // As in csslint-eclipse.js.
+        node.putInt(Option.SELECTOR_COST_BUDGET.getLowerName(), 20);
+        // As in Payload: about what a new connection sends in its first round trip.
+        node.putInt(Option.PAYLOAD_BUDGET_BYTES.getLowerName(), 14 * 1024);
     }
 
 }
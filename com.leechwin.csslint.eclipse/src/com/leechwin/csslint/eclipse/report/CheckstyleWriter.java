@@ -0,0 +1,48 @@
+package com.leechwin.csslint.eclipse.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+
+/**
+ * Write results in the checkstyle XML format, as understood by most CI servers. The source of each error is
+ * {@code csslint.} and the id of its rule, or just {@code csslint} for an issue without one.
+ */
+public class CheckstyleWriter implements ReportWriter {
+
+    private final Writer out;
+
+    public CheckstyleWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void start() throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<checkstyle version=\"4.3\">\n");
+    }
+
+    public void file(String path, List<Issue> issues) throws IOException {
+        out.write("<file name=\"" + Escape.xml(path) + "\">\n");
+        for (Issue issue : issues) {
+            out.write("<error line=\"" + issue.getLine() + "\" column=\"" + issue.getColumn() + "\" severity=\""
+                    + Escape.xml(issue.getType()) + "\" message=\"" + Escape.xml(issue.getMessage())
+                    + "\" source=\"" + Escape.xml(source(issue)) + "\"/>\n");
+        }
+        out.write("</file>\n");
+    }
+
+    private static String source(Issue issue) {
+        return issue.getRule() == null ? "csslint" : "csslint." + issue.getRule();
+    }
+
+    public void end() throws IOException {
+        out.write("</checkstyle>\n");
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
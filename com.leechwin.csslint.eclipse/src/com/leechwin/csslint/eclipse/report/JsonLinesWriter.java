@@ -0,0 +1,41 @@
+package com.leechwin.csslint.eclipse.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+
+/**
+ * Write results as JSON lines: one object per issue, with the file, line, column, type, message and the id of the
+ * rule, when it has one. Files without issues produce no output.
+ */
+public class JsonLinesWriter implements ReportWriter {
+
+    private final Writer out;
+
+    public JsonLinesWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void start() throws IOException {
+    }
+
+    public void file(String path, List<Issue> issues) throws IOException {
+        String file = Escape.json(path);
+        for (Issue issue : issues) {
+            out.write("{\"file\":" + file + ",\"line\":" + issue.getLine() + ",\"column\":" + issue.getColumn()
+                    + ",\"type\":" + Escape.json(issue.getType()) + ",\"message\":" + Escape.json(issue.getMessage())
+                    + (issue.getRule() == null ? "" : ",\"rule\":" + Escape.json(issue.getRule())) + "}\n");
+        }
+    }
+
+    public void end() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.leechwin.csslint.eclipse.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+
+/**
+ * Write lint results out as they come, one file at a time, so that a report never has to be held in memory. Call
+ * {@link #start()} once, {@link #file(String, List)} for every file linted, then {@link #end()}. Closing the writer
+ * closes the underlying stream.
+ */
+public interface ReportWriter extends Closeable {
+
+    /** Write whatever comes before the first file. */
+    void start() throws IOException;
+
+    /**
+     * Write the issues of one file.
+     * @param path the file, as it should appear in the report, with {@code '/'} as separator.
+     * @param issues the issues found in it, including rollups, which have no line.
+     */
+    void file(String path, List<Issue> issues) throws IOException;
+
+    /** Write whatever comes after the last file, and flush. */
+    void end() throws IOException;
+
+}
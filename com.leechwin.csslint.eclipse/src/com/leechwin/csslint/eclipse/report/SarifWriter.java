@@ -0,0 +1,73 @@
+package com.leechwin.csslint.eclipse.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+
+import com.leechwin.csslint.eclipse.engine.Issue;
+
+/**
+ * Write results as a SARIF 2.1.0 log with a single run. The results array is written as files come, so the log is
+ * only well formed once {@link #end()} has been called.
+ */
+public class SarifWriter implements ReportWriter {
+
+    private final Writer out;
+
+    /** Has a result been written yet? */
+    private boolean any;
+
+    public SarifWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void start() throws IOException {
+        out.write("{\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"version\":\"2.1.0\","
+                + "\"runs\":[{\"tool\":{\"driver\":{\"name\":\"CSSLint\",\"informationUri\":\"http://csslint.net/\"}},"
+                + "\"results\":[");
+    }
+
+    public void file(String path, List<Issue> issues) throws IOException {
+        String uri = Escape.json(uri(path));
+        for (Issue issue : issues) {
+            out.write(any ? ",\n" : "\n");
+            any = true;
+            out.write("{");
+            if (issue.getRule() != null) {
+                out.write("\"ruleId\":" + Escape.json(issue.getRule()) + ",");
+            }
+            out.write("\"level\":" + Escape.json("error".equals(issue.getType()) ? "error" : "warning")
+                    + ",\"message\":{\"text\":" + Escape.json(issue.getMessage()) + "},"
+                    + "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":" + uri + "}");
+            if (issue.getLine() > 0) {
+                out.write(",\"region\":{\"startLine\":" + issue.getLine());
+                if (issue.getColumn() > 0) {
+                    out.write(",\"startColumn\":" + issue.getColumn());
+                }
+                out.write("}");
+            }
+            out.write("}}]}");
+        }
+    }
+
+    public void end() throws IOException {
+        out.write("\n]}]}\n");
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /** Turn a relative path into a relative URI reference. */
+    private static String uri(String path) {
+        try {
+            return new URI(null, null, path, null).getRawPath();
+        } catch (URISyntaxException e) {
+            return path;
+        }
+    }
+
+}
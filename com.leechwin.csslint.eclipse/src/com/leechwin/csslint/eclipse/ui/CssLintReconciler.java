@@ -0,0 +1,301 @@
+package com.leechwin.csslint.eclipse.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ISynchronizable;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelExtension;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPropertyListener;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.leechwin.csslint.eclipse.builder.CssLintProvider;
+import com.leechwin.csslint.eclipse.builder.LintConfig;
+import com.leechwin.csslint.eclipse.engine.Cancellation;
+import com.leechwin.csslint.eclipse.engine.CssLintResult;
+import com.leechwin.csslint.eclipse.engine.Issue;
+import com.leechwin.csslint.eclipse.engine.LintCancelledException;
+
+/**
+ * Lint the unsaved contents of a css editor as the user types. Edits are debounced, and every new edit cancels the
+ * pending or running lint of the previous one, stopping csslint.js part way. Linting happens in a background job using
+ * the pooled engines from {@link CssLintProvider}, and the results replace the previous annotations in a single batch.
+ * Files are only linted if the builder would lint them; larger ones are linted in blocks, so that after an edit only
+ * the blocks it touched are linted again. Once the editor is saved, the builder's markers take over and our
+ * annotations are removed.
+ * <p>
+ * The document and the editor belong to the UI thread, so the text is read there, and the results are checked
+ * against the current text and shown there too. Only the lint itself runs in the background; a save cannot come
+ * between deciding that the results are current and showing them.
+ */
+class CssLintReconciler implements IDocumentListener, IPropertyListener {
+
+    /** How long to wait after the last keystroke before linting. */
+    private static final long DELAY_MILLIS = 250;
+
+    /**
+     * Stylesheets larger than this many characters are linted in blocks, reusing the results of blocks the last edit
+     * did not touch. Lower than the builder's threshold, as we lint again on every pause in typing.
+     */
+    private static final int INCREMENTAL_THRESHOLD = 32 * 1024;
+
+    private static final String WARNING_TYPE = "org.eclipse.ui.workbench.texteditor.warning";
+    private static final String ERROR_TYPE = "org.eclipse.ui.workbench.texteditor.error";
+
+    private final ITextEditor editor;
+    private final IDocument document;
+    private final IAnnotationModel model;
+    private final Display display;
+    private final LintJob job = new LintJob();
+
+    /** The annotations we added last time. Guarded by {@code this}. */
+    private Annotation[] annotations = new Annotation[0];
+
+    /** Are we listening to the editor? Only used on the UI thread. */
+    private boolean installed;
+
+    /** The file being edited, and the text of the document as it was at a modification stamp. */
+    private static class Snapshot {
+        final IFile file;
+        final long stamp;
+        final String css;
+
+        Snapshot(IFile file, long stamp, String css) {
+            this.file = file;
+            this.stamp = stamp;
+            this.css = css;
+        }
+    }
+
+    private class LintJob extends Job {
+        LintJob() {
+            super("CSSLint");
+            setSystem(true);
+            setPriority(Job.SHORT);
+        }
+
+        /** Stops the lint in progress, if any. */
+        private volatile Cancellation running;
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            Cancellation cancellation = new Cancellation();
+            running = cancellation;
+            Snapshot snapshot = snapshot();
+            if (snapshot == null || monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+
+            CssLintProvider provider = CssLintProvider.getDefault();
+            IFile file = snapshot.file;
+            if (file == null || !provider.isLinted(file)) {
+                // The builder would not lint it either, for its project, name or path.
+                publish(snapshot.stamp, Collections.<Issue> emptyList());
+                return Status.OK_STATUS;
+            }
+            // Lint as the builder will, with the .csslintrc files above the file.
+            LintConfig config = provider.getConfig(file);
+            CssLintResult result;
+            try {
+                result = provider.lint(file.getFullPath().toString(), snapshot.css, config,
+                        provider.getFingerprint(config), INCREMENTAL_THRESHOLD, cancellation);
+            } catch (LintCancelledException e) {
+                return Status.CANCEL_STATUS;
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            publish(snapshot.stamp, result.getIssues());
+            return Status.OK_STATUS;
+        }
+
+        @Override
+        protected void canceling() {
+            Cancellation current = running;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    /**
+     * Create a reconciler for {@code editor}, or return null if it does not edit a document we can annotate.
+     */
+    static CssLintReconciler create(IEditorPart part) {
+        ITextEditor editor = part instanceof ITextEditor ? (ITextEditor) part : part.getAdapter(ITextEditor.class);
+        if (editor == null) {
+            return null;
+        }
+        IDocumentProvider provider = editor.getDocumentProvider();
+        if (provider == null) {
+            return null;
+        }
+        IDocument document = provider.getDocument(editor.getEditorInput());
+        IAnnotationModel model = provider.getAnnotationModel(editor.getEditorInput());
+        if (document == null || !(model instanceof IAnnotationModelExtension)) {
+            return null;
+        }
+        return new CssLintReconciler(editor, document, model);
+    }
+
+    private CssLintReconciler(ITextEditor editor, IDocument document, IAnnotationModel model) {
+        this.editor = editor;
+        this.document = document;
+        this.model = model;
+        this.display = editor.getSite().getShell().getDisplay();
+    }
+
+    /** Start listening to the editor. Must be called on the UI thread. */
+    void install() {
+        installed = true;
+        document.addDocumentListener(this);
+        editor.addPropertyListener(this);
+        if (editor.isDirty()) {
+            job.schedule(DELAY_MILLIS);
+        }
+    }
+
+    /** Stop listening to the editor, and remove our annotations. Must be called on the UI thread. */
+    void uninstall() {
+        installed = false;
+        document.removeDocumentListener(this);
+        editor.removePropertyListener(this);
+        job.cancel();
+        replaceAnnotations(new HashMap<Annotation, Position>());
+    }
+
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    public void documentChanged(DocumentEvent event) {
+        // Restarting the delay debounces keystrokes; cancelling abandons a lint of older text.
+        job.cancel();
+        job.schedule(DELAY_MILLIS);
+    }
+
+    public void propertyChanged(Object source, int propId) {
+        if (propId == IEditorPart.PROP_DIRTY && !editor.isDirty()) {
+            // Saved (or reverted): the builder's markers describe the file now.
+            job.cancel();
+            replaceAnnotations(new HashMap<Annotation, Position>());
+        }
+    }
+
+    /**
+     * Take a copy of the text on the UI thread.
+     * @return the copy, or null if the editor has been closed or saved, and the builder will report.
+     */
+    private Snapshot snapshot() {
+        final Snapshot[] taken = new Snapshot[1];
+        if (!display.isDisposed()) {
+            display.syncExec(new Runnable() {
+                public void run() {
+                    if (installed && editor.isDirty()) {
+                        IFile file = editor.getEditorInput().getAdapter(IFile.class);
+                        taken[0] = new Snapshot(file, stampOf(document), document.get());
+                    }
+                }
+            });
+        }
+        return taken[0];
+    }
+
+    /**
+     * Show {@code issues}, found in the text at {@code stamp}, on the UI thread. They are dropped if a newer edit has
+     * arrived since, whose own run will report, or if the editor has been saved, and the builder will report. The
+     * check and the update happen together, on the same thread as {@link #propertyChanged(Object, int)}.
+     */
+    private void publish(final long stamp, final List<Issue> issues) {
+        if (display.isDisposed()) {
+            return;
+        }
+        display.asyncExec(new Runnable() {
+            public void run() {
+                if (installed && stamp == stampOf(document) && editor.isDirty()) {
+                    replaceAnnotations(toAnnotations(issues));
+                }
+            }
+        });
+    }
+
+    /** Convert issues into annotations positioned in the current document. */
+    private Map<Annotation, Position> toAnnotations(List<Issue> issues) {
+        Map<Annotation, Position> added = new HashMap<Annotation, Position>();
+        for (Issue issue : issues) {
+            Position position = positionOf(issue);
+            if (position != null) {
+                String type = "error".equals(issue.getType()) ? ERROR_TYPE : WARNING_TYPE;
+                added.put(new Annotation(type, false, issue.getMessage()), position);
+            }
+        }
+        return added;
+    }
+
+    /** Find the text that an issue is about: from its column to the end of the word there. */
+    private Position positionOf(Issue issue) {
+        if (issue.getCharStart() >= 0) {
+            // Already worked out by the engine, for minified text.
+            int end = Math.min(issue.getCharEnd(), document.getLength());
+            return end < issue.getCharStart() ? null : new Position(issue.getCharStart(), end - issue.getCharStart());
+        }
+        try {
+            IRegion line = document.getLineInformation(Math.max(issue.getLine() - 1, 0));
+            int column = Math.min(Math.max(issue.getColumn() - 1, 0), line.getLength());
+            int start = line.getOffset() + column;
+            int end = start;
+            int lineEnd = line.getOffset() + line.getLength();
+            while (end < lineEnd && !isDelimiter(document.getChar(end))) {
+                end++;
+            }
+            return new Position(start, Math.max(end - start, 1));
+        } catch (BadLocationException e) {
+            return null;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == ';' || c == '{' || c == '}';
+    }
+
+    /** Swap our previous annotations for {@code added} in one model update. */
+    private void replaceAnnotations(Map<Annotation, Position> added) {
+        Object lock = model instanceof ISynchronizable ? ((ISynchronizable) model).getLockObject() : null;
+        if (lock == null) {
+            lock = model;
+        }
+        synchronized (lock) {
+            synchronized (this) {
+                ((IAnnotationModelExtension) model).replaceAnnotations(annotations, added);
+                List<Annotation> current = new ArrayList<Annotation>(added.keySet());
+                annotations = current.toArray(new Annotation[current.size()]);
+            }
+        }
+    }
+
+    private static long stampOf(IDocument document) {
+        if (document instanceof IDocumentExtension4) {
+            return ((IDocumentExtension4) document).getModificationStamp();
+        }
+        return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.leechwin.csslint.eclipse.ui;
+
+import org.eclipse.ui.IStartup;
+
+/**
+ * Start tracking editors once the workbench is up, so that open stylesheets are linted as they are typed in, and
+ * scheduled first by the builder, whether or not a build has run yet.
+ */
+public class CssLintStartup implements IStartup {
+
+    public void earlyStartup() {
+        EditorTracker.getInstance().init();
+    }
+
+}
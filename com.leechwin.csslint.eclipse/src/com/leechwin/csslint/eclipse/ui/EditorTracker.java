@@ -0,0 +1,256 @@
+package com.leechwin.csslint.eclipse.ui;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+
+import com.leechwin.csslint.eclipse.CssLintLog;
+import com.leechwin.csslint.eclipse.builder.EditorState;
+
+/**
+ * Keep track of which files are open in editors, so that the builder can lint those first. The state is recomputed on
+ * the UI thread whenever an editor is opened, closed, activated or hidden, and published as immutable snapshots that
+ * may be read from any thread. Open css editors also get a {@link CssLintReconciler}.
+ */
+public class EditorTracker implements EditorState {
+
+    private static final EditorTracker instance = new EditorTracker();
+
+    private final AtomicBoolean installed = new AtomicBoolean();
+
+    /** Which files are in editors, at one point in time. */
+    private static final class Snapshot {
+        final int generation;
+        final IPath activeFile;
+        final Set<IPath> visibleFiles;
+        final Set<IPath> openFiles;
+
+        Snapshot(int generation, IPath activeFile, Set<IPath> visibleFiles, Set<IPath> openFiles) {
+            this.generation = generation;
+            this.activeFile = activeFile;
+            this.visibleFiles = visibleFiles;
+            this.openFiles = openFiles;
+        }
+
+        /** Does this have the same files in the same editors? */
+        boolean sameFiles(IPath active, Set<IPath> visible, Set<IPath> open) {
+            return (activeFile == null ? active == null : activeFile.equals(active)) && visibleFiles.equals(visible)
+                    && openFiles.equals(open);
+        }
+    }
+
+    /** Replaced as a whole, so that readers never see part of one state and part of another. */
+    private volatile Snapshot state = new Snapshot(0, null, Collections.<IPath> emptySet(),
+            Collections.<IPath> emptySet());
+
+    /** Reconcilers of the open css editors, and the file each was created for. Only used on the UI thread. */
+    private final Map<IEditorPart, CssLintReconciler> reconcilers = new HashMap<IEditorPart, CssLintReconciler>();
+    private final Map<IEditorPart, IPath> reconciledFiles = new HashMap<IEditorPart, IPath>();
+
+    private final IPartListener2 partListener = new IPartListener2() {
+        public void partActivated(IWorkbenchPartReference partRef) {
+            update();
+        }
+
+        public void partBroughtToTop(IWorkbenchPartReference partRef) {
+            update();
+        }
+
+        public void partClosed(IWorkbenchPartReference partRef) {
+            update();
+        }
+
+        public void partDeactivated(IWorkbenchPartReference partRef) {
+        }
+
+        public void partOpened(IWorkbenchPartReference partRef) {
+            update();
+        }
+
+        public void partHidden(IWorkbenchPartReference partRef) {
+            update();
+        }
+
+        public void partVisible(IWorkbenchPartReference partRef) {
+            update();
+        }
+
+        public void partInputChanged(IWorkbenchPartReference partRef) {
+            update();
+        }
+    };
+
+    private final IWindowListener windowListener = new IWindowListener() {
+        public void windowActivated(IWorkbenchWindow window) {
+            update();
+        }
+
+        public void windowDeactivated(IWorkbenchWindow window) {
+        }
+
+        public void windowClosed(IWorkbenchWindow window) {
+            window.getPartService().removePartListener(partListener);
+            update();
+        }
+
+        public void windowOpened(IWorkbenchWindow window) {
+            window.getPartService().addPartListener(partListener);
+            update();
+        }
+    };
+
+    private EditorTracker() {
+    }
+
+    /**
+     * access method for singleton object
+     * @return singleton instance
+     */
+    public static EditorTracker getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start listening to the workbench. Safe to call from any thread, and more than once. Does nothing when running
+     * without a workbench.
+     */
+    public void init() {
+        if (!PlatformUI.isWorkbenchRunning() || !installed.compareAndSet(false, true)) {
+            return;
+        }
+        final IWorkbench workbench = PlatformUI.getWorkbench();
+        workbench.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                workbench.addWindowListener(windowListener);
+                for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+                    window.getPartService().addPartListener(partListener);
+                }
+                update();
+            }
+        });
+    }
+
+    /**
+     * A counter which changes every time the set of open, visible or active editors changes.
+     */
+    public int getGeneration() {
+        return state.generation;
+    }
+
+    /** Is {@code file} shown in the active editor? */
+    public boolean isActive(IFile file) {
+        return file.getFullPath().equals(state.activeFile);
+    }
+
+    /** Is {@code file} shown in an editor that is currently visible? */
+    public boolean isVisible(IFile file) {
+        return state.visibleFiles.contains(file.getFullPath());
+    }
+
+    /** Is {@code file} open in any editor? */
+    public boolean isOpen(IFile file) {
+        return state.openFiles.contains(file.getFullPath());
+    }
+
+    /** Recompute the editor state. Must be called on the UI thread. */
+    private void update() {
+        IWorkbench workbench = PlatformUI.getWorkbench();
+        IPath active = null;
+        Set<IPath> visible = new HashSet<IPath>();
+        Set<IPath> open = new HashSet<IPath>();
+        Map<IEditorPart, IPath> editors = new HashMap<IEditorPart, IPath>();
+
+        IWorkbenchWindow activeWindow = workbench.getActiveWorkbenchWindow();
+        for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+            for (IWorkbenchPage page : window.getPages()) {
+                for (IEditorReference ref : page.getEditorReferences()) {
+                    IPath path = pathOf(ref);
+                    if (path == null) {
+                        continue;
+                    }
+                    open.add(path);
+                    IEditorPart editor = ref.getEditor(false);
+                    if (editor != null) {
+                        editors.put(editor, path);
+                    }
+                    if (editor != null && page.isPartVisible(editor)) {
+                        visible.add(path);
+                        if (window == activeWindow && editor == page.getActiveEditor()) {
+                            active = path;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Most part events, such as activating a view, leave the editors as they were; only a change is worth
+        // rescheduling for.
+        Snapshot current = state;
+        if (!current.sameFiles(active, visible, open)) {
+            state = new Snapshot(current.generation + 1, active, Collections.unmodifiableSet(visible),
+                    Collections.unmodifiableSet(open));
+        }
+
+        updateReconcilers(editors);
+    }
+
+    /** Attach reconcilers to new css editors, and detach them from closed ones. */
+    private void updateReconcilers(Map<IEditorPart, IPath> editors) {
+        for (Iterator<Map.Entry<IEditorPart, CssLintReconciler>> it = reconcilers.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<IEditorPart, CssLintReconciler> entry = it.next();
+            IPath path = editors.get(entry.getKey());
+            if (path == null || !path.equals(reconciledFiles.get(entry.getKey()))) {
+                entry.getValue().uninstall();
+                reconciledFiles.remove(entry.getKey());
+                it.remove();
+            }
+        }
+        for (Map.Entry<IEditorPart, IPath> entry : editors.entrySet()) {
+            IEditorPart editor = entry.getKey();
+            if (reconcilers.containsKey(editor) || !isCss(entry.getValue())) {
+                continue;
+            }
+            CssLintReconciler reconciler = CssLintReconciler.create(editor);
+            if (reconciler != null) {
+                reconciler.install();
+                reconcilers.put(editor, reconciler);
+                reconciledFiles.put(editor, entry.getValue());
+            }
+        }
+    }
+
+    private boolean isCss(IPath path) {
+        return "css".equals(path.getFileExtension());
+    }
+
+    /** Return the workspace path of the file being edited, or null. */
+    private IPath pathOf(IEditorReference ref) {
+        try {
+            IEditorInput input = ref.getEditorInput();
+            IFile file = input == null ? null : input.getAdapter(IFile.class);
+            return file == null ? null : file.getFullPath();
+        } catch (PartInitException e) {
+            CssLintLog.error(e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.leechwin.csslint.eclipse.ui;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+
+import com.leechwin.csslint.eclipse.CssLintLog;
+import com.leechwin.csslint.eclipse.builder.ReportExporter;
+import com.leechwin.csslint.eclipse.report.CheckstyleWriter;
+import com.leechwin.csslint.eclipse.report.JsonLinesWriter;
+import com.leechwin.csslint.eclipse.report.ReportWriter;
+import com.leechwin.csslint.eclipse.report.SarifWriter;
+
+/**
+ * Export the CSSLint problems of the selected projects to a file, in a background job. The format follows the file
+ * name: SARIF for {@code .sarif}, JSON lines for {@code .json} and {@code .jsonl}, and checkstyle XML otherwise.
+ */
+public class ExportReportAction implements IObjectActionDelegate {
+
+    private IStructuredSelection selection;
+
+    private IWorkbenchPart part;
+
+    public void run(IAction action) {
+        final List<IProject> projects = new ArrayList<IProject>();
+        for (Object obj : selection.toArray()) {
+            IProject project = projectFromSelectedItem(obj);
+            if (project != null) {
+                projects.add(project);
+            }
+        }
+        if (projects.isEmpty()) {
+            return;
+        }
+
+        FileDialog dialog = new FileDialog(part.getSite().getShell(), SWT.SAVE);
+        dialog.setText("Export CSSLint Report");
+        dialog.setFilterExtensions(new String[] { "*.sarif", "*.jsonl", "*.xml" });
+        dialog.setFilterNames(new String[] { "SARIF (*.sarif)", "JSON lines (*.jsonl)", "Checkstyle XML (*.xml)" });
+        dialog.setFileName(projects.get(0).getName() + "-csslint.sarif");
+        dialog.setOverwrite(true);
+        final String path = dialog.open();
+        if (path == null) {
+            return;
+        }
+
+        Job job = new Job("Exporting CSSLint report") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                monitor.beginTask("Exporting CSSLint report", projects.size());
+                ReportWriter writer = null;
+                try {
+                    writer = writerFor(path);
+                    writer.start();
+                    ReportExporter exporter = new ReportExporter();
+                    for (IProject project : projects) {
+                        exporter.export(project, writer, monitor);
+                        monitor.worked(1);
+                    }
+                    writer.end();
+                    return Status.OK_STATUS;
+                } catch (OperationCanceledException e) {
+                    return Status.CANCEL_STATUS;
+                } catch (CoreException e) {
+                    return e.getStatus();
+                } catch (IOException e) {
+                    return CssLintLog.createStatus(IStatus.ERROR, IStatus.OK, "Failed to write " + path, e);
+                } finally {
+                    close(writer);
+                    monitor.done();
+                }
+            }
+        };
+        job.setUser(true);
+        job.schedule();
+    }
+
+    private static ReportWriter writerFor(String path) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), Charset.forName("UTF-8")));
+        String lower = path.toLowerCase();
+        if (lower.endsWith(".sarif")) {
+            return new SarifWriter(out);
+        } else if (lower.endsWith(".json") || lower.endsWith(".jsonl")) {
+            return new JsonLinesWriter(out);
+        }
+        return new CheckstyleWriter(out);
+    }
+
+    private static void close(ReportWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+        }
+    }
+
+    /** Convert to a project, or return null. */
+    private IProject projectFromSelectedItem(Object obj) {
+        if (obj instanceof IProject) {
+            return (IProject) obj;
+        } else if (obj instanceof IAdaptable) {
+            return ((IAdaptable) obj).getAdapter(IProject.class);
+        } else {
+            return null;
+        }
+    }
+
+    public void selectionChanged(IAction action, ISelection selection) {
+        if (selection instanceof IStructuredSelection) {
+            this.selection = (IStructuredSelection) selection;
+        }
+    }
+
+    public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+        this.part = targetPart;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.leechwin.csslint.eclipse.ui.preferences;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.PreferencePage;
@@ -22,6 +23,7 @@ import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
 import com.leechwin.csslint.eclipse.Activator;
+import com.leechwin.csslint.eclipse.builder.CssLintProvider;
 import com.leechwin.csslint.eclipse.builder.Excluder;
 import com.leechwin.csslint.eclipse.engine.Option;
 
@@ -56,7 +58,6 @@ public class OptionsPreferencePage extends PreferencePage implements IWorkbenchP
     }
 
     /** Create and add an {@link IntegerFieldEditor}. */
-    @SuppressWarnings("unused")
     private void addIntegerFieldEditor(Composite parent, Option o) {
         addFieldEditor(new IntegerFieldEditor(nameOfPref(o), o.getDescription(), parent));
     }
@@ -155,6 +156,13 @@ public class OptionsPreferencePage extends PreferencePage implements IWorkbenchP
         // Our own eclipse-specific preference.
         addFieldEditor(new StringFieldEditor(Excluder.EXCLUDE_PATH_REGEXES_PREFERENCE,
                 "File patterns to exclude", parent));
+        addFieldEditor(new BooleanFieldEditor(CssLintProvider.PROJECT_ROLLUPS_PREFERENCE,
+                "Also count stylesheet-wide rules across each project", parent));
+        for (Option o : Option.values()) {
+            if (o.getType() == Integer.class) {
+                addIntegerFieldEditor(parent, o);
+            }
+        }
     }
 
     public void init(IWorkbench workbench) {